@@ -0,0 +1,111 @@
+package br.com.pehenmo.springwebfluxessentials.benchmark;
+
+import br.com.pehenmo.springwebfluxessentials.config.AnimeProperties;
+import br.com.pehenmo.springwebfluxessentials.dto.AnimePage;
+import br.com.pehenmo.springwebfluxessentials.entity.Anime;
+import br.com.pehenmo.springwebfluxessentials.repository.AnimeRepository;
+import br.com.pehenmo.springwebfluxessentials.service.AnimeBatchLoader;
+import br.com.pehenmo.springwebfluxessentials.service.AnimeCache;
+import br.com.pehenmo.springwebfluxessentials.service.AnimeChangeFeed;
+import br.com.pehenmo.springwebfluxessentials.service.AnimeService;
+import br.com.pehenmo.springwebfluxessentials.service.AnimeSingleFlight;
+import br.com.pehenmo.springwebfluxessentials.service.AnimeValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.validation.Validation;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The {@link AnimeService} pipelines over an in-memory repository: the Reactor operators,
+ * the cache, the validation and the transaction demarcation, without any I/O.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnimeServiceBenchmark {
+
+    @Param({"100", "1000"})
+    private int size;
+
+    private static final Anime NOT_FOUND = new Anime();
+
+    private AnimeService cachedService;
+    private AnimeService uncachedService;
+    private List<Anime> newAnimes;
+
+    @Setup
+    public void setUp() {
+        List<Anime> animes = IntStream.rangeClosed(1, size)
+                .mapToObj(id -> new Anime(id, "Anime " + id))
+                .collect(Collectors.toList());
+        newAnimes = animes.stream().map(anime -> anime.withId(null)).collect(Collectors.toList());
+
+        AnimeRepository animeRepository = StubAnimeRepository.create(animes);
+        TransactionalOperator transactionalOperator = TransactionalOperator.create(new NoOpReactiveTransactionManager());
+        AnimeValidator animeValidator = new AnimeValidator(Validation.buildDefaultValidatorFactory().getValidator());
+
+        AnimeProperties cached = new AnimeProperties();
+        cachedService = new AnimeService(animeRepository, cached, new AnimeCache(cached), new AnimeSingleFlight(),
+                new AnimeBatchLoader(animeRepository, cached), new AnimeChangeFeed(cached, Optional.empty()),
+                transactionalOperator, animeValidator);
+
+        AnimeProperties uncached = new AnimeProperties();
+        uncached.getCache().setEnabled(false);
+        // measures the lookups themselves rather than the wait for the batch window
+        uncached.getLookup().setBatchWindow(Duration.ZERO);
+        uncachedService = new AnimeService(animeRepository, uncached, new AnimeCache(uncached), new AnimeSingleFlight(),
+                new AnimeBatchLoader(animeRepository, uncached), new AnimeChangeFeed(uncached, Optional.empty()),
+                transactionalOperator, animeValidator);
+    }
+
+    @Benchmark
+    public Anime findByIdCached() {
+        return cachedService.findById(1).block();
+    }
+
+    @Benchmark
+    public Anime findByIdUncached() {
+        return uncachedService.findById(1).block();
+    }
+
+    @Benchmark
+    public Anime findByIdMissing() {
+        return uncachedService.findById(size + 1).onErrorReturn(ResponseStatusException.class, NOT_FOUND).block();
+    }
+
+    @Benchmark
+    public AnimePage findAll() {
+        // the whole catalog, up to the largest page allowed
+        return uncachedService.findPage(null, size).block();
+    }
+
+    @Benchmark
+    public AnimePage findPage() {
+        return uncachedService.findPage(0, null).block();
+    }
+
+    @Benchmark
+    public List<Anime> saveAll() {
+        return uncachedService.saveAll(newAnimes).collectList().block();
+    }
+}
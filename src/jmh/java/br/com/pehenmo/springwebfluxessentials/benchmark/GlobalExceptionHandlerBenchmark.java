@@ -0,0 +1,67 @@
+package br.com.pehenmo.springwebfluxessentials.benchmark;
+
+import br.com.pehenmo.springwebfluxessentials.exception.AnimeNotFoundException;
+import br.com.pehenmo.springwebfluxessentials.exception.GlobalExceptionHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.autoconfigure.web.WebProperties;
+import org.springframework.boot.web.reactive.error.DefaultErrorAttributes;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering a {@link ResponseStatusException} into the JSON error body, going through
+ * {@code GlobalExceptionHandler.formatErrorResponse} the same way a failed request does,
+ * and the same error raised as an {@link AnimeNotFoundException}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GlobalExceptionHandlerBenchmark {
+
+    private GlobalExceptionHandler handler;
+    private ResponseStatusException notFound;
+    private AnimeNotFoundException animeNotFound;
+
+    @Setup
+    public void setUp() throws Exception {
+        StaticApplicationContext applicationContext = new StaticApplicationContext();
+        applicationContext.refresh();
+        handler = new GlobalExceptionHandler(new DefaultErrorAttributes(), new WebProperties(),
+                applicationContext, ServerCodecConfigurer.create());
+        handler.afterPropertiesSet();
+        notFound = new ResponseStatusException(HttpStatus.NOT_FOUND, "Anime not found");
+        animeNotFound = new AnimeNotFoundException();
+    }
+
+    @Benchmark
+    public MockServerWebExchange formatErrorResponse() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/animes/42"));
+        handler.handle(exchange, notFound).block();
+        return exchange;
+    }
+
+    @Benchmark
+    public MockServerWebExchange formatStacklessErrorResponse() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/animes/42"));
+        handler.handle(exchange, animeNotFound).block();
+        return exchange;
+    }
+}
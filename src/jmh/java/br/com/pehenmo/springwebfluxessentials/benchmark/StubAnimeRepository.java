@@ -0,0 +1,62 @@
+package br.com.pehenmo.springwebfluxessentials.benchmark;
+
+import br.com.pehenmo.springwebfluxessentials.entity.Anime;
+import br.com.pehenmo.springwebfluxessentials.repository.AnimeRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory {@link AnimeRepository} answering from a fixed list, so the benchmarks measure
+ * the service pipelines rather than a mocking framework or a database.
+ */
+final class StubAnimeRepository {
+
+    private StubAnimeRepository() {
+    }
+
+    static AnimeRepository create(List<Anime> animes) {
+        AtomicInteger sequence = new AtomicInteger(animes.size());
+        return (AnimeRepository) Proxy.newProxyInstance(AnimeRepository.class.getClassLoader(),
+                new Class<?>[]{AnimeRepository.class},
+                (proxy, method, args) -> invoke(animes, sequence, method, args));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object invoke(List<Anime> animes, AtomicInteger sequence, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "findAll":
+            case "streamAll":
+                return Flux.fromIterable(animes);
+            case "findById":
+                int id = (Integer) args[0];
+                return id >= 1 && id <= animes.size() ? Mono.just(animes.get(id - 1)) : Mono.empty();
+            case "findPageAfter":
+                int after = Math.max((Integer) args[0], 0);
+                return Flux.fromIterable(animes.subList(Math.min(after, animes.size()),
+                        Math.min(after + (Integer) args[1], animes.size())));
+            case "save":
+                return Mono.just(((Anime) args[0]).withId(sequence.incrementAndGet()));
+            case "saveAll":
+            case "insertAll":
+                return Flux.fromIterable((Iterable<Anime>) args[0])
+                        .map(anime -> anime.withId(sequence.incrementAndGet()));
+            case "updateNameById":
+            case "removeById":
+                int target = (Integer) args[0];
+                return Mono.just(target >= 1 && target <= animes.size() ? 1 : 0);
+            case "hashCode":
+                return System.identityHashCode(animes);
+            case "equals":
+                return false;
+            case "toString":
+                return "StubAnimeRepository";
+            default:
+                throw new UnsupportedOperationException(method.getName());
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package br.com.pehenmo.springwebfluxessentials.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "anime")
+public class AnimeProperties {
+
+    private Page page = new Page();
+    private Stream stream = new Stream();
+    private Search search = new Search();
+    private Lookup lookup = new Lookup();
+    private Cache cache = new Cache();
+    private Security security = new Security();
+    private Batch batch = new Batch();
+    private Edge edge = new Edge();
+    private Replicas replicas = new Replicas();
+    private Changes changes = new Changes();
+    private RateLimit rateLimit = new RateLimit();
+    private Blockhound blockhound = new Blockhound();
+
+    @Data
+    public static class Page {
+        private int defaultSize = 20;
+        private int maxSize = 500;
+    }
+
+    @Data
+    public static class Stream {
+        private int fetchSize = 256;
+    }
+
+    /**
+     * Searches only rank the first {@code maxResults} matches, paging stops there.
+     */
+    @Data
+    public static class Search {
+        private int maxResults = 100;
+    }
+
+    /**
+     * Lookups by id made within {@code batchWindow} of each other are sent as one query of at
+     * most {@code maxBatchSize} ids, a zero window sends each one on its own. {@code maxIds}
+     * limits the ids of a single {@code GET /animes?ids=} request.
+     */
+    @Data
+    public static class Lookup {
+        private Duration batchWindow = Duration.ofMillis(2);
+        private int maxBatchSize = 100;
+        private int maxIds = 500;
+    }
+
+    @Data
+    public static class Cache {
+        private boolean enabled = true;
+        private long maximumSize = 10_000;
+        private Duration ttl = Duration.ofMinutes(5);
+    }
+
+    @Data
+    public static class Batch {
+        private int chunkSize = 1_000;
+        private Duration windowTimeout = Duration.ofSeconds(1);
+    }
+
+    /**
+     * Settings of the in-memory catalog used by the {@code edge} profile. Without a snapshot
+     * file the catalog starts empty and is lost on shutdown.
+     */
+    @Data
+    public static class Edge {
+        private Path snapshot;
+    }
+
+    /**
+     * Read replicas of the {@code spring.r2dbc} database, connected with its credentials and
+     * pooled like it. Without urls every query goes to the primary. A client that wrote
+     * reads from the primary for {@code readFromPrimaryAfterWrite}, so it sees its writes.
+     */
+    @Data
+    public static class Replicas {
+        private List<String> urls = new ArrayList<>();
+        private Balancing balancing = Balancing.ROUND_ROBIN;
+        private Duration readFromPrimaryAfterWrite = Duration.ofSeconds(5);
+    }
+
+    /**
+     * ROUND_ROBIN takes the replicas in turn, LEAST_PENDING the one with the fewest callers
+     * waiting for a connection.
+     */
+    public enum Balancing {
+        ROUND_ROBIN, LEAST_PENDING
+    }
+
+    /**
+     * Each subscriber of {@code GET /animes/changes} buffers up to {@code bufferSize} changes
+     * it has not consumed yet, then applies the {@code overflow} policy. With the
+     * {@code postgres} relay the changes of every node go through Postgres {@code LISTEN/NOTIFY}.
+     */
+    @Data
+    public static class Changes {
+        private int bufferSize = 256;
+        private ChangesOverflow overflow = ChangesOverflow.DROP_OLDEST;
+        private ChangesRelay relay = ChangesRelay.LOCAL;
+    }
+
+    /**
+     * DROP_OLDEST drops the oldest buffered changes of a slow subscriber to keep the newest,
+     * DISCONNECT ends its stream, so it can reconnect and list the animes again.
+     */
+    public enum ChangesOverflow {
+        DROP_OLDEST, DISCONNECT
+    }
+
+    /**
+     * LOCAL only delivers the changes made by this node, POSTGRES those of every node sharing
+     * the database.
+     */
+    public enum ChangesRelay {
+        LOCAL, POSTGRES
+    }
+
+    /**
+     * Requests of an authenticated user are limited by token buckets, one per user and route:
+     * a bucket holds up to {@code capacity} requests and is refilled at {@code requestsPerSecond}.
+     * The limits are given per role, a user with several roles getting the most generous one,
+     * and a user with none of them is not limited. The first of the {@code routes} matching the
+     * path replaces the default {@code roles} limits. Buckets idle for {@code idleTimeout} are
+     * forgotten.
+     */
+    @Data
+    public static class RateLimit {
+        private boolean enabled = true;
+        private Map<String, Limit> roles = new LinkedHashMap<>();
+        private List<RouteLimit> routes = new ArrayList<>();
+        private Duration idleTimeout = Duration.ofMinutes(10);
+        private long maximumSize = 100_000;
+    }
+
+    @Data
+    public static class RouteLimit {
+        private String name;
+        private String pattern;
+        private Map<String, Limit> roles = new LinkedHashMap<>();
+    }
+
+    @Data
+    public static class Limit {
+        private int capacity;
+        private double requestsPerSecond;
+    }
+
+    @Data
+    public static class Blockhound {
+        private BlockingCallsMode mode = BlockingCallsMode.OFF;
+    }
+
+    /**
+     * OFF does not install BlockHound at all, REPORT counts the blocking calls made on
+     * non-blocking threads by call site and lets them through, STRICT fails them with a
+     * {@code BlockingOperationError}.
+     */
+    public enum BlockingCallsMode {
+        OFF, REPORT, STRICT
+    }
+
+    @Data
+    public static class Security {
+        private SecurityMode mode = SecurityMode.SESSION;
+        private CredentialCache credentialCache = new CredentialCache();
+        private Token token = new Token();
+    }
+
+    /**
+     * SESSION keeps form login and stores the security context in the web session, while
+     * STATELESS only accepts basic credentials or bearer tokens and never creates a session.
+     */
+    public enum SecurityMode {
+        SESSION, STATELESS
+    }
+
+    @Data
+    public static class CredentialCache {
+        private boolean enabled = true;
+        private long maximumSize = 1_000;
+        private Duration ttl = Duration.ofMinutes(1);
+    }
+
+    @Data
+    public static class Token {
+        private String secret;
+        private Duration ttl = Duration.ofMinutes(15);
+    }
+}
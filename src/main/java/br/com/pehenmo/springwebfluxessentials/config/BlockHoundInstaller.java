@@ -0,0 +1,49 @@
+package br.com.pehenmo.springwebfluxessentials.config;
+
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationEnvironmentPreparedEvent;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.ApplicationListener;
+import reactor.blockhound.BlockHound;
+
+/**
+ * Installs BlockHound as configured by {@code anime.blockhound.mode}, which can also be set with
+ * {@code -Danime.blockhound.mode} or {@code ANIME_BLOCKHOUND_MODE}. It is registered in
+ * {@code META-INF/spring.factories} so that it runs once the environment is known but before
+ * the context starts any Reactor thread.
+ * <p>
+ * BlockHound cannot be uninstalled: the first context of the JVM decides the mode.
+ * <p>
+ * https://github.com/reactor/BlockHound/issues/33
+ */
+@Slf4j
+public class BlockHoundInstaller implements ApplicationListener<ApplicationEnvironmentPreparedEvent> {
+
+    @Override
+    public void onApplicationEvent(ApplicationEnvironmentPreparedEvent event) {
+        AnimeProperties.BlockingCallsMode mode = Binder.get(event.getEnvironment())
+                .bind("anime.blockhound", AnimeProperties.Blockhound.class)
+                .map(AnimeProperties.Blockhound::getMode)
+                .orElse(AnimeProperties.BlockingCallsMode.OFF);
+        if (mode == AnimeProperties.BlockingCallsMode.OFF) {
+            return;
+        }
+        BlockHound.install(builder -> {
+            builder.allowBlockingCallsInside("java.util.UUID", "randomUUID")
+                    .allowBlockingCallsInside("java.io.InputStream", "readNBytes")
+                    .allowBlockingCallsInside("java.io.FilterInputStream", "read")
+                    .allowBlockingCallsInside("java.io.RandomAccessFile", "readBytes")
+                    .allowBlockingCallsInside("java.lang.Object", "wait")
+                    .allowBlockingCallsInside("java.util.stream.ReferencePipeline", "collect")
+                    .allowBlockingCallsInside("java.util.concurrent.ForkJoinTask", "externalAwaitDone")
+                    .allowBlockingCallsInside("java.util.concurrent.ForkJoinTask", "doInvoke")
+                    .allowBlockingCallsInside("org.springdoc.core.OpenAPIService", "initializeHiddenRestController");
+            if (mode == AnimeProperties.BlockingCallsMode.REPORT) {
+                // the actuator registries join the global registry once the context is up
+                builder.blockingMethodCallback(new BlockingCallReporter(Metrics.globalRegistry));
+            }
+        });
+        log.info("BlockHound installed in {} mode", mode);
+    }
+}
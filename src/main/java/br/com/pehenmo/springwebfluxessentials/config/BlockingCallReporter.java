@@ -0,0 +1,67 @@
+package br.com.pehenmo.springwebfluxessentials.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.blockhound.BlockingMethod;
+import reactor.blockhound.BlockingOperationError;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * BlockHound callback counting the blocking calls instead of failing them, in the
+ * {@code blockhound.blocking.calls} counter tagged by blocking method and call site. The call
+ * site is the innermost frame of this application, or of a library when the call does not
+ * come from the application. The stack of each new call site is logged once.
+ */
+@Slf4j
+class BlockingCallReporter implements Consumer<BlockingMethod> {
+
+    static final String METRIC_NAME = "blockhound.blocking.calls";
+
+    private static final String APPLICATION_PACKAGE = "br.com.pehenmo.springwebfluxessentials.";
+
+    private final MeterRegistry meterRegistry;
+    private final Set<String> reportedSites = ConcurrentHashMap.newKeySet();
+
+    BlockingCallReporter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void accept(BlockingMethod method) {
+        BlockingOperationError error = new BlockingOperationError(method);
+        String site = callSite(error.getStackTrace());
+        Counter.builder(METRIC_NAME)
+                .tag("method", method.toString())
+                .tag("site", site)
+                .description("Blocking calls made on non-blocking threads")
+                .register(meterRegistry)
+                .increment();
+        if (reportedSites.add(method + " " + site)) {
+            log.warn("Blocking call to {} from {}", method, site, error);
+        }
+    }
+
+    static String callSite(StackTraceElement[] stack) {
+        StackTraceElement library = null;
+        for (StackTraceElement frame : stack) {
+            String className = frame.getClassName();
+            if (className.startsWith(APPLICATION_PACKAGE)) {
+                if (!className.equals(BlockingCallReporter.class.getName())) {
+                    return frame.getClassName() + "." + frame.getMethodName();
+                }
+            } else if (library == null && !isPlatform(className)) {
+                library = frame;
+            }
+        }
+        return library == null ? "unknown" : library.getClassName() + "." + library.getMethodName();
+    }
+
+    private static boolean isPlatform(String className) {
+        return className.startsWith("java.") || className.startsWith("jdk.") || className.startsWith("sun.")
+                || className.startsWith("reactor.blockhound.");
+    }
+}
@@ -0,0 +1,103 @@
+package br.com.pehenmo.springwebfluxessentials.config;
+
+import br.com.pehenmo.springwebfluxessentials.entity.UserSystem;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import reactor.core.publisher.Mono;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * Remembers successful username/password authentications for a short time, so repeated
+ * requests with the same credentials skip the user lookup and the password hash check.
+ * Entries are keyed by an HMAC of the credentials with a per-process random key, so the
+ * cache never holds a password or a digest that could be checked offline.
+ * <p>
+ * Users saved through the repository are evicted right away, but Spring Data R2DBC has no
+ * callback on delete and changes made outside the application are not seen either, so the
+ * {@code ttl} of {@code anime.security.credential-cache} is how long a deleted user, or a user
+ * whose password was changed in the database, keeps authenticating with the old credentials.
+ */
+public class CachingReactiveAuthenticationManager implements ReactiveAuthenticationManager {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final ReactiveAuthenticationManager delegate;
+    private final Cache<String, Authentication> cache;
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> mac = ThreadLocal.withInitial(this::newMac);
+
+    public CachingReactiveAuthenticationManager(ReactiveAuthenticationManager delegate,
+                                                AnimeProperties.CredentialCache properties) {
+        this.delegate = delegate;
+        this.cache = properties.isEnabled() ?
+                Caffeine.newBuilder()
+                        .maximumSize(properties.getMaximumSize())
+                        .expireAfterWrite(properties.getTtl())
+                        .build() :
+                null;
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.key = new SecretKeySpec(secret, HMAC_ALGORITHM);
+    }
+
+    @Override
+    public Mono<Authentication> authenticate(Authentication authentication) {
+        if (cache == null || !(authentication instanceof UsernamePasswordAuthenticationToken)
+                || authentication.getCredentials() == null) {
+            return delegate.authenticate(authentication);
+        }
+        String cacheKey = digest(authentication.getName(), authentication.getCredentials().toString());
+        Authentication cached = cache.getIfPresent(cacheKey);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return delegate.authenticate(authentication)
+                .doOnNext(result -> cache.put(cacheKey, result));
+    }
+
+    /**
+     * Drops every cached authentication of the given user, matching either its id or its
+     * username so that renamed users are evicted as well.
+     */
+    public void evict(UserSystem userSystem) {
+        if (cache == null) {
+            return;
+        }
+        cache.asMap().values().removeIf(authentication -> isSameUser(authentication, userSystem));
+    }
+
+    private static boolean isSameUser(Authentication authentication, UserSystem userSystem) {
+        if (Objects.equals(authentication.getName(), userSystem.getUsername())) {
+            return true;
+        }
+        return authentication.getPrincipal() instanceof UserSystem && userSystem.getId() != null
+                && userSystem.getId().equals(((UserSystem) authentication.getPrincipal()).getId());
+    }
+
+    private String digest(String username, String password) {
+        Mac hmac = mac.get();
+        hmac.update(username.getBytes(StandardCharsets.UTF_8));
+        hmac.update((byte) 0);
+        return Base64.getEncoder().encodeToString(hmac.doFinal(password.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac hmac = Mac.getInstance(HMAC_ALGORITHM);
+            hmac.init(key);
+            return hmac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not create " + HMAC_ALGORITHM, e);
+        }
+    }
+}
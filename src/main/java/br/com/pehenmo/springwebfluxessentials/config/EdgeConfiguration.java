@@ -0,0 +1,44 @@
+package br.com.pehenmo.springwebfluxessentials.config;
+
+import br.com.pehenmo.springwebfluxessentials.repository.InMemoryAnimeRepository;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.transaction.reactive.GenericReactiveTransaction;
+import org.springframework.transaction.reactive.TransactionCallback;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The {@code edge} profile serves animes from the {@link InMemoryAnimeRepository}, which has
+ * no transactions, so the service's transactions are replaced by a pass-through operator.
+ * Each repository statement, batches included, is still applied as a whole or not at all,
+ * and no batch of the service runs a statement that can fail after one that wrote, so a
+ * failed batch writes nothing. Readers may see a batch half applied, though.
+ */
+@Configuration
+@Profile("edge")
+public class EdgeConfiguration {
+
+    @Bean
+    public TransactionalOperator transactionalOperator() {
+        return new TransactionalOperator() {
+            @Override
+            public <T> Flux<T> transactional(Flux<T> flux) {
+                return flux;
+            }
+
+            @Override
+            public <T> Mono<T> transactional(Mono<T> mono) {
+                return mono;
+            }
+
+            @Override
+            public <T> Flux<T> execute(TransactionCallback<T> action) {
+                return Flux.defer(() -> action.doInTransaction(
+                        new GenericReactiveTransaction(null, false, false, false, false, null)));
+            }
+        };
+    }
+}
@@ -0,0 +1,95 @@
+package br.com.pehenmo.springwebfluxessentials.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.reactive.result.method.annotation.RequestMappingHandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Publishes the number of requests being handled as the {@code http.server.requests.active}
+ * gauge, tagged by route pattern as the {@code uri} of the actuator's
+ * {@code http.server.requests} timer, which provides the latency histograms and the
+ * per-status counts.
+ * <p>
+ * The route of a request is only known once the handler mapping matched it, after this filter
+ * started counting it, so the filter only tracks the requests in flight and the gauges count
+ * them by route when read. Requests not matched yet, or matched to a route without a gauge, are
+ * counted as {@code UNKNOWN}. The routes of the controllers have gauges up front, the others
+ * from the first time one of their requests completes.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class InFlightRequestsWebFilter implements WebFilter {
+
+    static final String METRIC_NAME = "http.server.requests.active";
+    static final String UNKNOWN = "UNKNOWN";
+
+    private final MeterRegistry meterRegistry;
+    private final Set<ServerWebExchange> inFlight = ConcurrentHashMap.newKeySet();
+    private final Set<String> routes = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public InFlightRequestsWebFilter(MeterRegistry meterRegistry,
+                                     @Qualifier("requestMappingHandlerMapping") RequestMappingHandlerMapping handlerMapping) {
+        this(meterRegistry, handlerMapping.getHandlerMethods().keySet().stream()
+                .flatMap(info -> info.getPatternsCondition().getPatterns().stream())
+                .map(PathPattern::getPatternString)
+                .collect(Collectors.toSet()));
+    }
+
+    InFlightRequestsWebFilter(MeterRegistry meterRegistry, Collection<String> routes) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder(METRIC_NAME, this, filter -> filter.count(UNKNOWN))
+                .tag("uri", UNKNOWN)
+                .description("Requests currently being handled")
+                .register(meterRegistry);
+        routes.forEach(this::register);
+    }
+
+    private void register(String route) {
+        if (routes.add(route)) {
+            Gauge.builder(METRIC_NAME, this, filter -> filter.count(route))
+                    .tag("uri", route)
+                    .description("Requests currently being handled")
+                    .register(meterRegistry);
+        }
+    }
+
+    private long count(String route) {
+        return inFlight.stream().filter(exchange -> route.equals(route(exchange))).count();
+    }
+
+    private String route(ServerWebExchange exchange) {
+        PathPattern pattern = exchange.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern != null && routes.contains(pattern.getPatternString()) ? pattern.getPatternString() : UNKNOWN;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        return Mono.defer(() -> {
+            inFlight.add(exchange);
+            return chain.filter(exchange).doFinally(signal -> {
+                inFlight.remove(exchange);
+                PathPattern pattern = exchange.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                if (pattern != null) {
+                    register(pattern.getPatternString());
+                }
+            });
+        });
+    }
+}
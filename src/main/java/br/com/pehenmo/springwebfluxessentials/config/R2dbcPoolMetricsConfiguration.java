@@ -0,0 +1,35 @@
+package br.com.pehenmo.springwebfluxessentials.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * The pool gauges (acquired, idle, pending, allocated) are bound by the actuator for every
+ * pooled {@link ConnectionFactory}. This adds the acquire latency, which the pool does not
+ * expose, by wrapping the connection factories in a {@link TimedConnectionFactory}. The
+ * replicas of a {@link ReadReplicaRoutingConnectionFactory} are timed on their own.
+ */
+@Configuration
+public class R2dbcPoolMetricsConfiguration {
+
+    @Bean
+    public static BeanPostProcessor timedConnectionFactoryPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof ConnectionFactory && !(bean instanceof TimedConnectionFactory)
+                        && !(bean instanceof ReadReplicaRoutingConnectionFactory)) {
+                    MeterRegistry registry = meterRegistry.getIfAvailable();
+                    if (registry != null) {
+                        return new TimedConnectionFactory((ConnectionFactory) bean, beanName, registry);
+                    }
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,161 @@
+package br.com.pehenmo.springwebfluxessentials.config;
+
+import br.com.pehenmo.springwebfluxessentials.exception.StacklessResponseStatusException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.PathContainer;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the request rate of every authenticated user per route, as configured by
+ * {@code anime.rate-limit}, answering {@code 429 Too Many Requests} with a {@code Retry-After}
+ * once the user's {@link TokenBucket} is empty. It runs after the security filter chain, whose
+ * order is -100, to know the user.
+ * <p>
+ * Publishes the {@code anime.rate.limit.requests} counter, tagged by route and
+ * {@code allowed} or {@code rejected}, and the {@code anime.rate.limit.buckets} gauge.
+ */
+@Component
+@Order(0)
+public class RateLimitWebFilter implements WebFilter {
+
+    static final String DEFAULT_ROUTE = "default";
+
+    private final boolean enabled;
+    private final List<Route> routes = new ArrayList<>();
+    private final Route defaultRoute;
+
+    public RateLimitWebFilter(AnimeProperties animeProperties, MeterRegistry meterRegistry) {
+        AnimeProperties.RateLimit properties = animeProperties.getRateLimit();
+        this.enabled = properties.isEnabled();
+        for (AnimeProperties.RouteLimit route : properties.getRoutes()) {
+            routes.add(new Route(route.getName(), PathPatternParser.defaultInstance.parse(route.getPattern()),
+                    route.getRoles(), properties, meterRegistry));
+        }
+        this.defaultRoute = new Route(DEFAULT_ROUTE, null, properties.getRoles(), properties, meterRegistry);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!enabled) {
+            return chain.filter(exchange);
+        }
+        Route route = route(exchange.getRequest().getPath().pathWithinApplication());
+        return ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .filter(Authentication::isAuthenticated)
+                .map(authentication -> route.tryTake(authentication, System.nanoTime()))
+                .defaultIfEmpty(0L)
+                .flatMap(wait -> wait == 0 ? chain.filter(exchange) : reject(exchange, wait));
+    }
+
+    private Route route(PathContainer path) {
+        for (Route route : routes) {
+            if (route.pattern.matches(path)) {
+                return route;
+            }
+        }
+        return defaultRoute;
+    }
+
+    private static Mono<Void> reject(ServerWebExchange exchange, long wait) {
+        long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1));
+        exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(seconds));
+        return Mono.error(new StacklessResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Too many requests"));
+    }
+
+    private static final class Route {
+
+        private final PathPattern pattern;
+        private final Map<String, AnimeProperties.Limit> limits = new HashMap<>();
+        private final Cache<String, TokenBucket> buckets;
+        private final Counter allowed;
+        private final Counter rejected;
+
+        private Route(String name, PathPattern pattern, Map<String, AnimeProperties.Limit> roles,
+                      AnimeProperties.RateLimit properties, MeterRegistry meterRegistry) {
+            this.pattern = pattern;
+            roles.forEach((role, limit) -> {
+                try {
+                    TokenBucket.validate(limit.getCapacity(), limit.getRequestsPerSecond());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Invalid rate limit of role " + role + " on route " + name
+                            + ": " + e.getMessage(), e);
+                }
+                limits.put("ROLE_" + role, limit);
+            });
+            this.buckets = Caffeine.newBuilder()
+                    .maximumSize(properties.getMaximumSize())
+                    .expireAfterAccess(properties.getIdleTimeout())
+                    .build();
+            this.allowed = counter(name, "allowed", meterRegistry);
+            this.rejected = counter(name, "rejected", meterRegistry);
+            Gauge.builder("anime.rate.limit.buckets", buckets, Cache::estimatedSize)
+                    .tag("route", name)
+                    .description("Users with a token bucket")
+                    .register(meterRegistry);
+        }
+
+        private static Counter counter(String route, String outcome, MeterRegistry meterRegistry) {
+            return Counter.builder("anime.rate.limit.requests")
+                    .tag("route", route)
+                    .tag("outcome", outcome)
+                    .description("Requests of users with a rate limit")
+                    .register(meterRegistry);
+        }
+
+        /**
+         * Returns 0 when the request is allowed, otherwise the nanoseconds until it would be.
+         */
+        private long tryTake(Authentication authentication, long now) {
+            AnimeProperties.Limit limit = limit(authentication);
+            if (limit == null) {
+                return 0;
+            }
+            long wait = buckets.get(authentication.getName(),
+                            user -> new TokenBucket(limit.getCapacity(), limit.getRequestsPerSecond(), now))
+                    .tryTake(now);
+            (wait == 0 ? allowed : rejected).increment();
+            return wait;
+        }
+
+        private AnimeProperties.Limit limit(Authentication authentication) {
+            AnimeProperties.Limit best = null;
+            for (GrantedAuthority authority : authentication.getAuthorities()) {
+                AnimeProperties.Limit limit = limits.get(authority.getAuthority());
+                if (limit != null && (best == null || isMoreGenerous(limit, best))) {
+                    best = limit;
+                }
+            }
+            return best;
+        }
+
+        private static boolean isMoreGenerous(AnimeProperties.Limit limit, AnimeProperties.Limit other) {
+            return limit.getRequestsPerSecond() != other.getRequestsPerSecond() ?
+                    limit.getRequestsPerSecond() > other.getRequestsPerSecond() :
+                    limit.getCapacity() > other.getCapacity();
+        }
+    }
+}
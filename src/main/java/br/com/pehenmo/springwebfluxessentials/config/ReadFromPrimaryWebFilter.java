@@ -0,0 +1,64 @@
+package br.com.pehenmo.springwebfluxessentials.config;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseCookie;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Lets a request read from the primary instead of a replica, with the {@code X-Read-From-Primary:
+ * true} header or the {@code read-from-primary} cookie. The cookie is set on the response of
+ * every successful write and lasts {@code anime.replicas.read-from-primary-after-write}, so a
+ * client reads its own writes while the replicas catch up.
+ * <p>
+ * Does nothing when there are no replicas.
+ */
+public class ReadFromPrimaryWebFilter implements WebFilter {
+
+    static final String HEADER_NAME = "X-Read-From-Primary";
+    static final String COOKIE_NAME = "read-from-primary";
+
+    private final boolean enabled;
+    private final Duration readFromPrimaryAfterWrite;
+
+    public ReadFromPrimaryWebFilter(AnimeProperties.Replicas replicas) {
+        this.enabled = !replicas.getUrls().isEmpty();
+        this.readFromPrimaryAfterWrite = replicas.getReadFromPrimaryAfterWrite();
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!enabled) {
+            return chain.filter(exchange);
+        }
+        if (isWrite(exchange.getRequest().getMethod()) && !readFromPrimaryAfterWrite.isZero()) {
+            ServerHttpResponse response = exchange.getResponse();
+            response.beforeCommit(() -> {
+                HttpStatus status = response.getStatusCode();
+                if (status == null || status.is2xxSuccessful()) {
+                    response.addCookie(ResponseCookie.from(COOKIE_NAME, "true")
+                            .maxAge(readFromPrimaryAfterWrite)
+                            .path("/")
+                            .httpOnly(true)
+                            .build());
+                }
+                return Mono.empty();
+            });
+        }
+        if (!"true".equalsIgnoreCase(exchange.getRequest().getHeaders().getFirst(HEADER_NAME))
+                && !exchange.getRequest().getCookies().containsKey(COOKIE_NAME)) {
+            return chain.filter(exchange);
+        }
+        return chain.filter(exchange).contextWrite(ReadReplicas::requirePrimary);
+    }
+
+    private static boolean isWrite(HttpMethod method) {
+        return method != HttpMethod.GET && method != HttpMethod.HEAD && method != HttpMethod.OPTIONS;
+    }
+}
@@ -0,0 +1,107 @@
+package br.com.pehenmo.springwebfluxessentials.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.actuate.metrics.r2dbc.ConnectionPoolMetrics;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.context.properties.PropertyMapper;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.r2dbc.ConnectionFactoryBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Routes the reads to the replicas of {@code anime.replicas.urls} by wrapping the connection
+ * factory of {@code spring.r2dbc} in a {@link ReadReplicaRoutingConnectionFactory}. Each
+ * replica has its own pool, timed and measured like the primary one.
+ */
+@Configuration
+public class ReadReplicaConfiguration {
+
+    @Bean
+    public static BeanPostProcessor readReplicaRoutingPostProcessor(Environment environment,
+                                                                    ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof ConnectionFactory) || bean instanceof ReadReplicaRoutingConnectionFactory) {
+                    return bean;
+                }
+                Binder binder = Binder.get(environment);
+                AnimeProperties.Replicas replicas = binder.bind("anime.replicas", AnimeProperties.Replicas.class)
+                        .orElseGet(AnimeProperties.Replicas::new);
+                if (replicas.getUrls().isEmpty()) {
+                    return bean;
+                }
+                R2dbcProperties r2dbc = binder.bind("spring.r2dbc", R2dbcProperties.class)
+                        .orElseGet(R2dbcProperties::new);
+                MeterRegistry registry = meterRegistry.getIfAvailable();
+                ConnectionFactory primary = timed((ConnectionFactory) bean, beanName, registry);
+                List<ConnectionFactory> replicaFactories = new ArrayList<>();
+                for (int i = 0; i < replicas.getUrls().size(); i++) {
+                    String name = beanName + "-replica-" + i;
+                    replicaFactories.add(timed(replica(replicas.getUrls().get(i), r2dbc, name, registry), name, registry));
+                }
+                return new ReadReplicaRoutingConnectionFactory(primary, replicaFactories, replicas.getBalancing());
+            }
+        };
+    }
+
+    private static ConnectionFactory replica(String url, R2dbcProperties r2dbc, String name, MeterRegistry registry) {
+        ConnectionFactoryBuilder builder = ConnectionFactoryBuilder.withUrl(url);
+        if (!ConnectionFactoryOptions.parse(url).hasOption(ConnectionFactoryOptions.USER)) {
+            if (StringUtils.hasText(r2dbc.getUsername())) {
+                builder.username(r2dbc.getUsername());
+            }
+            if (StringUtils.hasText(r2dbc.getPassword())) {
+                builder.password(r2dbc.getPassword());
+            }
+        }
+        ConnectionFactory connectionFactory = builder.build();
+        R2dbcProperties.Pool pool = r2dbc.getPool();
+        if (pool.isEnabled() && !(connectionFactory instanceof ConnectionPool)) {
+            ConnectionPoolConfiguration.Builder configuration = ConnectionPoolConfiguration.builder(connectionFactory)
+                    .name(name);
+            PropertyMapper map = PropertyMapper.get().alwaysApplyingWhenNonNull();
+            map.from(pool.getInitialSize()).to(configuration::initialSize);
+            map.from(pool.getMaxSize()).to(configuration::maxSize);
+            map.from(pool.getMaxIdleTime()).to(configuration::maxIdleTime);
+            map.from(pool.getMaxLifeTime()).to(configuration::maxLifeTime);
+            map.from(pool.getMaxAcquireTime()).to(configuration::maxAcquireTime);
+            map.from(pool.getMaxCreateConnectionTime()).to(configuration::maxCreateConnectionTime);
+            map.from(pool.getValidationQuery()).whenHasText().to(configuration::validationQuery);
+            map.from(pool.getValidationDepth()).to(configuration::validationDepth);
+            connectionFactory = new ConnectionPool(configuration.build());
+        }
+        if (connectionFactory instanceof ConnectionPool && registry != null) {
+            new ConnectionPoolMetrics((ConnectionPool) connectionFactory, name, Tags.empty()).bindTo(registry);
+        }
+        return connectionFactory;
+    }
+
+    /**
+     * The primary may or may not have been timed yet, depending on which post processor ran first.
+     */
+    private static ConnectionFactory timed(ConnectionFactory connectionFactory, String name, MeterRegistry registry) {
+        if (registry == null || connectionFactory instanceof TimedConnectionFactory) {
+            return connectionFactory;
+        }
+        return new TimedConnectionFactory(connectionFactory, name, registry);
+    }
+
+    @Bean
+    public ReadFromPrimaryWebFilter readFromPrimaryWebFilter(AnimeProperties animeProperties) {
+        return new ReadFromPrimaryWebFilter(animeProperties.getReplicas());
+    }
+}
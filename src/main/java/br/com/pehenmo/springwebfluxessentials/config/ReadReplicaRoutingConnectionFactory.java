@@ -0,0 +1,105 @@
+package br.com.pehenmo.springwebfluxessentials.config;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import io.r2dbc.spi.Wrapped;
+import lombok.RequiredArgsConstructor;
+import org.reactivestreams.Publisher;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Sends the queries marked as reads by {@link ReadReplicas} to one of the replicas and every
+ * other query to the primary. Replicas are picked in turn, or with {@code LEAST_PENDING} the
+ * one with the fewest callers waiting for a connection, ties being broken in turn.
+ * <p>
+ * Implements {@link Wrapped} with the primary, so the actuator still finds the primary pool.
+ */
+public class ReadReplicaRoutingConnectionFactory implements ConnectionFactory, Wrapped<ConnectionFactory>, Disposable {
+
+    private final ConnectionFactory primary;
+    private final List<Replica> replicas;
+    private final AnimeProperties.Balancing balancing;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReadReplicaRoutingConnectionFactory(ConnectionFactory primary, List<ConnectionFactory> replicas,
+                                               AnimeProperties.Balancing balancing) {
+        if (replicas.isEmpty()) {
+            throw new IllegalArgumentException("At least one replica is required");
+        }
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).collect(Collectors.toList());
+        this.balancing = balancing;
+    }
+
+    @Override
+    public Publisher<? extends Connection> create() {
+        return Mono.deferContextual(context -> ReadReplicas.isReplicaRead(context) ?
+                selectReplica().create() :
+                Mono.from(primary.create()));
+    }
+
+    private Replica selectReplica() {
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        Replica selected = replicas.get(start);
+        if (balancing == AnimeProperties.Balancing.LEAST_PENDING) {
+            for (int i = 1; i < replicas.size() && selected.pending.get() > 0; i++) {
+                Replica replica = replicas.get((start + i) % replicas.size());
+                if (replica.pending.get() < selected.pending.get()) {
+                    selected = replica;
+                }
+            }
+        }
+        return selected;
+    }
+
+    @Override
+    public ConnectionFactoryMetadata getMetadata() {
+        return primary.getMetadata();
+    }
+
+    @Override
+    public ConnectionFactory unwrap() {
+        return primary;
+    }
+
+    @Override
+    public void dispose() {
+        dispose(primary);
+        replicas.forEach(replica -> dispose(replica.connectionFactory));
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return primary instanceof Disposable && ((Disposable) primary).isDisposed();
+    }
+
+    private static void dispose(ConnectionFactory connectionFactory) {
+        if (connectionFactory instanceof Disposable) {
+            ((Disposable) connectionFactory).dispose();
+        }
+    }
+
+    /**
+     * Counts the callers waiting for a connection of the replica.
+     */
+    @RequiredArgsConstructor
+    private static final class Replica {
+
+        private final ConnectionFactory connectionFactory;
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private Mono<? extends Connection> create() {
+            return Mono.defer(() -> {
+                pending.incrementAndGet();
+                return Mono.from(connectionFactory.create())
+                        .doFinally(signal -> pending.decrementAndGet());
+            });
+        }
+    }
+}
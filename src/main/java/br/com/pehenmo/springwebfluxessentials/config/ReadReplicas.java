@@ -0,0 +1,37 @@
+package br.com.pehenmo.springwebfluxessentials.config;
+
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * Marks the Reactor context of queries that may be sent to a read replica, and of requests
+ * that must read from the primary. Queries are sent to a replica only when they are marked as
+ * reads and their request did not ask for the primary, so writes and transactions always go
+ * to the primary.
+ *
+ * @see ReadReplicaRoutingConnectionFactory
+ */
+public final class ReadReplicas {
+
+    private static final String READ = ReadReplicas.class.getName() + ".READ";
+    private static final String PRIMARY = ReadReplicas.class.getName() + ".PRIMARY";
+
+    private ReadReplicas() {
+    }
+
+    public static Context preferReplica(Context context) {
+        return context.put(READ, Boolean.TRUE);
+    }
+
+    public static Context requirePrimary(Context context) {
+        return context.put(PRIMARY, Boolean.TRUE);
+    }
+
+    public static boolean isPrimaryRequired(ContextView context) {
+        return context.hasKey(PRIMARY);
+    }
+
+    static boolean isReplicaRead(ContextView context) {
+        return context.hasKey(READ) && !context.hasKey(PRIMARY);
+    }
+}
@@ -1,40 +1,98 @@
 package br.com.pehenmo.springwebfluxessentials.config;
 
+import br.com.pehenmo.springwebfluxessentials.entity.UserSystem;
+import br.com.pehenmo.springwebfluxessentials.service.TokenService;
 import br.com.pehenmo.springwebfluxessentials.service.UserSystemUserDetailService;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.annotation.Bean;
+import org.springframework.data.r2dbc.mapping.event.AfterSaveCallback;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.ReactiveAuthenticationManager;
 import org.springframework.security.authentication.UserDetailsRepositoryReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.config.annotation.method.configuration.EnableReactiveMethodSecurity;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
 import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authentication.AuthenticationWebFilter;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+import org.springframework.security.web.server.savedrequest.NoOpServerRequestCache;
+import org.springframework.security.web.server.util.matcher.NegatedServerWebExchangeMatcher;
+import org.springframework.security.web.server.util.matcher.ServerWebExchangeMatchers;
+import reactor.core.publisher.Mono;
 
 @EnableWebFluxSecurity
 @EnableReactiveMethodSecurity
 public class SecurityConfiguration {
 
+    private static final String BEARER_PREFIX = "Bearer ";
+
     @Bean
-    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http){
-        return http.
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http,
+                                                         TokenService tokenService,
+                                                         AnimeProperties animeProperties){
+        http.
                 csrf().disable()
                 .authorizeExchange()
                 .pathMatchers(HttpMethod.POST, "/animes/**").hasRole("ADMIN")
                 .pathMatchers(HttpMethod.GET, "/animes/**").hasAnyRole("USER","ADMIN")
                 .pathMatchers(HttpMethod.DELETE, "/animes/**").hasRole("ADMIN")
                 .pathMatchers(HttpMethod.PUT, "/animes/**").hasRole("ADMIN")
+                .pathMatchers(HttpMethod.PATCH, "/animes/**").hasRole("ADMIN")
                 .pathMatchers("/webjars/**", "/v3/api-docs/**", "/swagger-ui.html").permitAll()
                 .anyExchange().authenticated()
-                .and()
-                    .formLogin()
                 .and()
                     .httpBasic()
                 .and()
-                    .build();
+                    .addFilterAt(bearerTokenAuthenticationFilter(tokenService), SecurityWebFiltersOrder.AUTHENTICATION);
+
+        if (animeProperties.getSecurity().getMode() == AnimeProperties.SecurityMode.STATELESS) {
+            http.securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                    .requestCache().requestCache(NoOpServerRequestCache.getInstance());
+        } else {
+            http.formLogin();
+        }
+        return http.build();
+    }
+
+    /**
+     * Bearer tokens are not accepted on {@code /auth/token}, so a new token can only be issued
+     * against the password and a token cannot be renewed past its own expiry.
+     */
+    private static AuthenticationWebFilter bearerTokenAuthenticationFilter(TokenService tokenService){
+        ReactiveAuthenticationManager tokenAuthenticationManager = authentication ->
+                Mono.fromCallable(() -> tokenService.verify((String) authentication.getCredentials()));
+
+        AuthenticationWebFilter filter = new AuthenticationWebFilter(tokenAuthenticationManager);
+        filter.setServerAuthenticationConverter(exchange ->
+                Mono.justOrEmpty(exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION))
+                        .filter(header -> header.startsWith(BEARER_PREFIX))
+                        .map(header -> new UsernamePasswordAuthenticationToken(null, header.substring(BEARER_PREFIX.length()))));
+        filter.setRequiresAuthenticationMatcher(new NegatedServerWebExchangeMatcher(
+                ServerWebExchangeMatchers.pathMatchers(HttpMethod.POST, "/auth/token")));
+        return filter;
+    }
+
+    @Bean
+    public CachingReactiveAuthenticationManager authenticationManager(UserSystemUserDetailService userSystemUserDetailService,
+                                                                      AnimeProperties animeProperties){
+        ReactiveAuthenticationManager authenticationManager = new UserDetailsRepositoryReactiveAuthenticationManager(userSystemUserDetailService);
+        return new CachingReactiveAuthenticationManager(authenticationManager, animeProperties.getSecurity().getCredentialCache());
     }
 
+    /**
+     * The authentication manager is looked up lazily, since it depends on the user repository,
+     * which depends on the entity template that collects this callback. There is no callback on
+     * delete: a deleted user is dropped from the cache when its entry expires, after at most the
+     * credential cache ttl.
+     */
     @Bean
-    public ReactiveAuthenticationManager authenticationManager(UserSystemUserDetailService userSystemUserDetailService){
-        return new UserDetailsRepositoryReactiveAuthenticationManager(userSystemUserDetailService);
+    public AfterSaveCallback<UserSystem> evictCachedCredentialsOnSave(ObjectProvider<CachingReactiveAuthenticationManager> authenticationManager){
+        return (userSystem, outboundRow, table) -> {
+            authenticationManager.getObject().evict(userSystem);
+            return Mono.just(userSystem);
+        };
     }
 }
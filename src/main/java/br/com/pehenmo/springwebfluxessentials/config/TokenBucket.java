@@ -0,0 +1,57 @@
+package br.com.pehenmo.springwebfluxessentials.config;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket of {@code capacity} tokens refilled at {@code rate} tokens per second. It is kept
+ * as the time at which it will be full again, as in the generic cell rate algorithm, so taking a
+ * token is a single compare-and-set: there is no lock and no refill task.
+ * <p>
+ * The rate must be positive and at most one token per nanosecond, and the capacity at least one
+ * token with {@code capacity} intervals fitting in a {@code long} of nanoseconds, which
+ * {@link #validate} checks so that a bad limit fails at startup rather than on a request.
+ */
+final class TokenBucket {
+
+    private final long interval;
+    private final long burst;
+    private final AtomicLong fullAt;
+
+    TokenBucket(int capacity, double rate, long now) {
+        validate(capacity, rate);
+        this.interval = (long) (1_000_000_000 / rate);
+        this.burst = interval * capacity;
+        this.fullAt = new AtomicLong(now);
+    }
+
+    static void validate(int capacity, double rate) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity must be at least 1, was " + capacity);
+        }
+        if (!(rate > 0) || rate > 1_000_000_000) {
+            throw new IllegalArgumentException("The rate must be positive and at most 1e9 per second, was " + rate);
+        }
+        long interval = (long) (1_000_000_000 / rate);
+        if (interval > (Long.MAX_VALUE / 2) / capacity) {
+            throw new IllegalArgumentException("The rate " + rate + " is too low for a capacity of " + capacity);
+        }
+    }
+
+    /**
+     * Takes a token at {@code now}, in nanoseconds, returning 0 when there was one and
+     * otherwise how many nanoseconds until there is one.
+     */
+    long tryTake(long now) {
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, now) + interval;
+            long wait = next - now - burst;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+}
@@ -1,5 +1,10 @@
 package br.com.pehenmo.springwebfluxessentials.controller;
 
+import br.com.pehenmo.springwebfluxessentials.dto.AnimeBulkResult;
+import br.com.pehenmo.springwebfluxessentials.dto.AnimeChange;
+import br.com.pehenmo.springwebfluxessentials.dto.AnimeChunkResult;
+import br.com.pehenmo.springwebfluxessentials.dto.AnimePage;
+import br.com.pehenmo.springwebfluxessentials.dto.AnimeUpsertResult;
 import br.com.pehenmo.springwebfluxessentials.entity.Anime;
 import br.com.pehenmo.springwebfluxessentials.service.AnimeService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -8,14 +13,24 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.security.SecurityScheme;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import javax.validation.Valid;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
 
 @RequiredArgsConstructor
 @RestController
@@ -30,18 +45,101 @@ public class AnimeController {
 
     private final AnimeService animeService;
 
+    /**
+     * Alias of {@link #listPage} answering the content of the page alone, with a {@code Link}
+     * header to the next page.
+     */
     @GetMapping
+    @Operation(summary = "list animes page by page, or answer 304 when the catalog did not change", tags = {"anime"}, security = @SecurityRequirement(name = "Basic Authentication"))
+    public Mono<ResponseEntity<List<Anime>>> listAll(@RequestParam(required = false) Integer after,
+                                                     @RequestParam(required = false) Integer limit,
+                                                     ServerWebExchange exchange){
+        return listPage(after, limit, exchange)
+                .map(response -> {
+                    ResponseEntity.BodyBuilder list = ResponseEntity.status(response.getStatusCode()).headers(response.getHeaders());
+                    AnimePage page = response.getBody();
+                    if (page == null) {
+                        return list.<List<Anime>>build();
+                    }
+                    if (page.getNext() != null) {
+                        list.header(HttpHeaders.LINK, "<" + UriComponentsBuilder.fromUri(exchange.getRequest().getURI())
+                                .replaceQueryParam("after", page.getNext())
+                                .build()
+                                .toUriString() + ">; rel=\"next\"");
+                    }
+                    return list.body(page.getContent());
+                });
+    }
+
+    @GetMapping(produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
     @ResponseStatus(HttpStatus.OK)
-    @Operation(summary = "list all animes", tags = {"anime"}, security = @SecurityRequirement(name = "Basic Authentication"))
-    public Flux<Anime> listAll(){
-        return animeService.findAll();
+    @Operation(summary = "stream all animes as they are read from the database", tags = {"anime"}, security = @SecurityRequirement(name = "Basic Authentication"))
+    public Flux<Anime> streamAll(){
+        return animeService.streamAll();
     }
 
-    @GetMapping(path = "{id}")
+    /**
+     * Pushes the creations, updates and deletions from now on, named after their type. Clients
+     * that fall too far behind lose changes or are disconnected, as {@code anime.changes.overflow}
+     * says.
+     */
+    @GetMapping(path = "changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "push the changes of the animes as server-sent events", tags = {"anime"}, security = @SecurityRequirement(name = "Basic Authentication"))
+    public Flux<ServerSentEvent<AnimeChange>> changes(){
+        return animeService.changes()
+                .map(change -> ServerSentEvent.builder(change)
+                        .event(change.getType().name().toLowerCase(Locale.ROOT))
+                        .build());
+    }
+
+    @GetMapping(params = "ids")
+    @ResponseStatus(HttpStatus.OK)
+    @Operation(summary = "find the animes with the given ids in a single query, skipping the missing ones", tags = {"anime"}, security = @SecurityRequirement(name = "Basic Authentication"))
+    public Flux<Anime> findAllById(@RequestParam List<Integer> ids){
+        return animeService.findAllById(ids);
+    }
+
+    /**
+     * Lists one page of animes after the {@code after} cursor, of {@code anime.page.default-size}
+     * animes unless another limit is asked for, never more than {@code anime.page.max-size}. The
+     * ETag is the catalog version, so a 304 is answered before any anime is read. When the
+     * version cannot be read, the page is listed without an ETag.
+     */
+    @GetMapping(path = "page")
+    @Operation(summary = "list animes page by page using the id of the last anime as cursor, or answer 304 when the catalog did not change", tags = {"anime"}, security = @SecurityRequirement(name = "Basic Authentication"))
+    public Mono<ResponseEntity<AnimePage>> listPage(@RequestParam(required = false) Integer after,
+                                                    @RequestParam(required = false) Integer limit,
+                                                    ServerWebExchange exchange){
+        return animeService.findCatalogVersion()
+                .map(version -> Optional.of("W/\"" + version + "\""))
+                .onErrorResume(error -> {
+                    log.warn("Listing the animes without an ETag, the catalog version could not be read: {}", error.toString());
+                    return Mono.empty();
+                })
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(etag -> etag.isPresent() && exchange.checkNotModified(etag.get()) ?
+                        Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag.get()).<AnimePage>build()) :
+                        animeService.findPage(after, limit).map(page -> {
+                            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                            etag.ifPresent(response::eTag);
+                            return response.body(page);
+                        }));
+    }
+
+    @GetMapping(path = "search")
     @ResponseStatus(HttpStatus.OK)
-    @Operation(summary = "find animes by id", tags = {"anime"}, security = @SecurityRequirement(name = "Basic Authentication"))
-    public Mono<Anime> findById(@PathVariable Integer id){
-        return animeService.findById(id);
+    @Operation(summary = "search animes by name, best matches first", tags = {"anime"}, security = @SecurityRequirement(name = "Basic Authentication"))
+    public Flux<Anime> search(@RequestParam String q,
+                              @RequestParam(required = false) Integer page,
+                              @RequestParam(required = false) Integer limit){
+        return animeService.search(q, page, limit);
+    }
+
+    @GetMapping(path = "{id}")
+    @Operation(summary = "find animes by id, or answer 304 when the anime did not change", tags = {"anime"}, security = @SecurityRequirement(name = "Basic Authentication"))
+    public Mono<ResponseEntity<Anime>> findById(@PathVariable Integer id){
+        return animeService.findById(id)
+                .map(anime -> ResponseEntity.ok().eTag(etag(anime)).body(anime));
     }
 
     @PostMapping
@@ -59,6 +157,38 @@ public class AnimeController {
         return animeService.saveAll(animes);
     }
 
+    @PostMapping(path = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @ResponseStatus(HttpStatus.CREATED)
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "save a stream of animes committing them chunk by chunk", tags = {"anime"}, security = @SecurityRequirement(name = "Basic Authentication"))
+    public Flux<AnimeChunkResult> saveStream(@RequestBody Flux<Anime> animes){
+        return animeService.saveStream(animes);
+    }
+
+    @PutMapping("/batch")
+    @ResponseStatus(HttpStatus.OK)
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "insert or update a batch of animes by id, leaving the unchanged ones untouched", tags = {"anime"}, security = @SecurityRequirement(name = "Basic Authentication"))
+    public Mono<AnimeUpsertResult> upsertBatch(@RequestBody List<Anime> animes){
+        return animeService.upsertAll(animes);
+    }
+
+    @PatchMapping("/batch")
+    @ResponseStatus(HttpStatus.OK)
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "rename a batch of existing animes with a single statement", tags = {"anime"}, security = @SecurityRequirement(name = "Basic Authentication"))
+    public Mono<AnimeBulkResult> updateBatch(@RequestBody List<Anime> animes){
+        return animeService.updateAll(animes);
+    }
+
+    @DeleteMapping("/batch")
+    @ResponseStatus(HttpStatus.OK)
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "delete a batch of animes by id with a single statement", tags = {"anime"}, security = @SecurityRequirement(name = "Basic Authentication"))
+    public Mono<AnimeBulkResult> deleteBatch(@RequestBody List<Integer> ids){
+        return animeService.deleteAll(ids);
+    }
+
     @PutMapping(path = "{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     @Operation(summary = "update anime", tags = {"anime"}, security = @SecurityRequirement(name = "Basic Authentication"))
@@ -73,4 +203,11 @@ public class AnimeController {
         return animeService.delete(id);
     }
 
+    /**
+     * Strong ETag of an anime: its JSON only depends on the id and the name.
+     */
+    static String etag(Anime anime) {
+        return DigestUtils.md5DigestAsHex((anime.getId() + ":" + anime.getName()).getBytes(StandardCharsets.UTF_8));
+    }
+
 }
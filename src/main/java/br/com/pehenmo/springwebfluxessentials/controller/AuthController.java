@@ -0,0 +1,32 @@
+package br.com.pehenmo.springwebfluxessentials.controller;
+
+import br.com.pehenmo.springwebfluxessentials.dto.TokenResponse;
+import br.com.pehenmo.springwebfluxessentials.service.TokenService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/auth")
+public class AuthController {
+
+    private final TokenService tokenService;
+
+    @PostMapping("/token")
+    @ResponseStatus(HttpStatus.OK)
+    @Operation(summary = "exchange the basic credentials for a short-lived bearer token", tags = {"auth"}, security = @SecurityRequirement(name = "Basic Authentication"))
+    public Mono<TokenResponse> token(){
+        return ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .map(authentication -> new TokenResponse(tokenService.issue(authentication), tokenService.getTtl().getSeconds()));
+    }
+}
@@ -0,0 +1,20 @@
+package br.com.pehenmo.springwebfluxessentials.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk update or delete: how many animes were affected, and the requested ids
+ * that do not exist, in the order they were requested.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AnimeBulkResult {
+
+    private int affected;
+    private List<Integer> missing;
+}
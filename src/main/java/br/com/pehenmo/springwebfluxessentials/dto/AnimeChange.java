@@ -0,0 +1,35 @@
+package br.com.pehenmo.springwebfluxessentials.dto;
+
+import br.com.pehenmo.springwebfluxessentials.entity.Anime;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A change of the catalog pushed by {@code GET /animes/changes}. Deletions only carry the id.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AnimeChange {
+
+    private Type type;
+    private Integer id;
+    private Anime anime;
+
+    public static AnimeChange created(Anime anime) {
+        return new AnimeChange(Type.CREATED, anime.getId(), anime);
+    }
+
+    public static AnimeChange updated(Anime anime) {
+        return new AnimeChange(Type.UPDATED, anime.getId(), anime);
+    }
+
+    public static AnimeChange deleted(Integer id) {
+        return new AnimeChange(Type.DELETED, id, null);
+    }
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+}
@@ -0,0 +1,24 @@
+package br.com.pehenmo.springwebfluxessentials.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Outcome of one chunk of a streaming batch ingestion. A chunk with errors was rejected
+ * as a whole and nothing of it was written.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class AnimeChunkResult {
+
+    private long chunk;
+    private int count;
+    private List<Integer> ids;
+    private List<AnimeRowError> errors;
+}
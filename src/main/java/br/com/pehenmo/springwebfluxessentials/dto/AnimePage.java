@@ -0,0 +1,35 @@
+package br.com.pehenmo.springwebfluxessentials.dto;
+
+import br.com.pehenmo.springwebfluxessentials.entity.Anime;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A keyset page of animes. {@code next} is the cursor to send back as {@code after}
+ * to fetch the following page, and is null on the last page.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class AnimePage {
+
+    private List<Anime> content;
+    private Integer next;
+
+    /**
+     * Builds a page from a lookahead query that fetched up to {@code size + 1} rows,
+     * the extra row only telling whether there is a next page.
+     */
+    public static AnimePage of(List<Anime> animes, int size) {
+        if (animes.size() <= size) {
+            return new AnimePage(animes, null);
+        }
+        List<Anime> content = animes.subList(0, size);
+        return new AnimePage(content, content.get(size - 1).getId());
+    }
+}
@@ -0,0 +1,19 @@
+package br.com.pehenmo.springwebfluxessentials.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A constraint violation of one row of a batch, {@code row} being its zero-based position
+ * in the request body.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AnimeRowError {
+
+    private long row;
+    private String field;
+    private String message;
+}
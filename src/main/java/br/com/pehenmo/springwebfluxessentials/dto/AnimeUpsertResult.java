@@ -0,0 +1,18 @@
+package br.com.pehenmo.springwebfluxessentials.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of a bulk upsert: how many animes were inserted, renamed, or already up to date.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AnimeUpsertResult {
+
+    private int inserted;
+    private int updated;
+    private int unchanged;
+}
@@ -0,0 +1,14 @@
+package br.com.pehenmo.springwebfluxessentials.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TokenResponse {
+
+    private String token;
+    private long expiresIn;
+}
@@ -0,0 +1,10 @@
+package br.com.pehenmo.springwebfluxessentials.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class AnimeNotFoundException extends StacklessResponseStatusException {
+
+    public AnimeNotFoundException() {
+        super(HttpStatus.NOT_FOUND, "Anime not found");
+    }
+}
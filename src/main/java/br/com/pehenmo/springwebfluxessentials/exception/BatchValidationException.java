@@ -0,0 +1,19 @@
+package br.com.pehenmo.springwebfluxessentials.exception;
+
+import br.com.pehenmo.springwebfluxessentials.dto.AnimeRowError;
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+@Getter
+public class BatchValidationException extends ResponseStatusException {
+
+    private final List<AnimeRowError> errors;
+
+    public BatchValidationException(List<AnimeRowError> errors) {
+        super(HttpStatus.BAD_REQUEST, "Invalid batch, " + errors.size() + " constraint violation(s)");
+        this.errors = errors;
+    }
+}
@@ -1,5 +1,6 @@
 package br.com.pehenmo.springwebfluxessentials.exception;
 
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
 import org.springframework.boot.autoconfigure.web.WebProperties;
 import org.springframework.boot.autoconfigure.web.reactive.error.AbstractErrorWebExceptionHandler;
 import org.springframework.boot.web.error.ErrorAttributeOptions;
@@ -14,15 +15,30 @@ import org.springframework.web.reactive.function.server.*;
 import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Mono;
 
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.springframework.boot.web.error.ErrorAttributeOptions.defaults;
 
+/**
+ * Renders errors as JSON through the {@link ErrorAttributes}. A {@link StacklessResponseStatusException}
+ * without {@code trace=true} takes a shorter path with the same fields: only the timestamp,
+ * path and request id are written per request, the rest is serialized once per status and reason.
+ */
 @Component
 @Order(-2)
 public class GlobalExceptionHandler extends AbstractErrorWebExceptionHandler {
 
+    private static final String DEVELOPMENT_MESSAGE = "a custom ResponseStatusException";
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSxxx")
+            .withZone(ZoneOffset.UTC);
+
+    private final Map<String, SerializedError> serializedErrors = new ConcurrentHashMap<>();
+
     public GlobalExceptionHandler(ErrorAttributes errorAttributes,
                                   WebProperties webproperties,
                                   ApplicationContext applicationContext,
@@ -39,6 +55,11 @@ public class GlobalExceptionHandler extends AbstractErrorWebExceptionHandler {
 
     private Mono<ServerResponse> formatErrorResponse(ServerRequest request) {
 
+        Throwable error = getError(request);
+        if (error instanceof StacklessResponseStatusException && !isTraceEnabled(request)) {
+            return formatStacklessErrorResponse(request, (StacklessResponseStatusException) error);
+        }
+
         ErrorAttributeOptions errorAttributeOptions = isTraceEnabled(request) ?
                 ErrorAttributeOptions.of(ErrorAttributeOptions.Include.STACK_TRACE) :
                 defaults();
@@ -50,7 +71,10 @@ public class GlobalExceptionHandler extends AbstractErrorWebExceptionHandler {
         if(throwable instanceof ResponseStatusException){
             throwable = (ResponseStatusException) throwable;
             errorAttributesMap.put("message", throwable.getMessage());
-            errorAttributesMap.put("developmentMessage", "a custom ResponseStatusException");
+            errorAttributesMap.put("developmentMessage", DEVELOPMENT_MESSAGE);
+        }
+        if(throwable instanceof BatchValidationException){
+            errorAttributesMap.put("errors", ((BatchValidationException) throwable).getErrors());
         }
 
 
@@ -60,6 +84,40 @@ public class GlobalExceptionHandler extends AbstractErrorWebExceptionHandler {
                 .body(BodyInserters.fromValue(errorAttributesMap));
     }
 
+    private Mono<ServerResponse> formatStacklessErrorResponse(ServerRequest request, StacklessResponseStatusException ex) {
+        SerializedError serialized = serializedErrors.computeIfAbsent(ex.getMessage(), message -> new SerializedError(ex));
+        String body = "{\"timestamp\":\"" + TIMESTAMP.format(Instant.now())
+                + "\",\"path\":\"" + quote(request.path())
+                + serialized.beforeRequestId
+                + quote(request.exchange().getRequest().getId())
+                + serialized.afterRequestId;
+        return ServerResponse
+                .status(ex.getStatus())
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body);
+    }
+
+    /**
+     * The fields around the request id, in the order {@link #formatErrorResponse} writes them.
+     */
+    private static final class SerializedError {
+
+        private final String beforeRequestId;
+        private final String afterRequestId;
+
+        private SerializedError(ResponseStatusException ex) {
+            beforeRequestId = "\",\"status\":" + ex.getRawStatusCode()
+                    + ",\"error\":\"" + quote(ex.getStatus().getReasonPhrase())
+                    + "\",\"requestId\":\"";
+            afterRequestId = "\",\"message\":\"" + quote(ex.getMessage())
+                    + "\",\"developmentMessage\":\"" + DEVELOPMENT_MESSAGE + "\"}";
+        }
+    }
+
+    private static String quote(String value) {
+        return new String(JsonStringEncoder.getInstance().quoteAsString(value));
+    }
+
     @Override
     protected boolean isTraceEnabled(ServerRequest request) {
         if(null != request.uri().getQuery() &&
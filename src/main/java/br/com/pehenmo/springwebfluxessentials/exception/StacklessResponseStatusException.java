@@ -0,0 +1,21 @@
+package br.com.pehenmo.springwebfluxessentials.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * {@link ResponseStatusException} for the errors expected in normal traffic, like unknown ids
+ * or invalid parameters, which does not capture a stack trace. Its reason must be a constant:
+ * {@link GlobalExceptionHandler} renders it from a body serialized once per status and reason.
+ */
+public class StacklessResponseStatusException extends ResponseStatusException {
+
+    public StacklessResponseStatusException(HttpStatus status, String reason) {
+        super(status, reason);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
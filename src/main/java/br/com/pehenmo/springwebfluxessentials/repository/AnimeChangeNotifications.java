@@ -0,0 +1,93 @@
+package br.com.pehenmo.springwebfluxessentials.repository;
+
+import br.com.pehenmo.springwebfluxessentials.dto.AnimeChange;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.r2dbc.postgresql.PostgresqlConnectionFactory;
+import io.r2dbc.postgresql.api.PostgresqlConnection;
+import io.r2dbc.postgresql.api.PostgresqlResult;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Wrapped;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Relays the changes of the catalog between the nodes sharing the database through Postgres
+ * {@code LISTEN/NOTIFY} on the {@code anime_changes} channel, one JSON change per notification.
+ * <p>
+ * Listening holds a connection of its own, outside the pool, opened on the primary since the
+ * replicas do not receive the notifications.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "anime.changes.relay", havingValue = "postgres")
+public class AnimeChangeNotifications {
+
+    static final String CHANNEL = "anime_changes";
+
+    private final DatabaseClient databaseClient;
+    private final ConnectionFactory connectionFactory;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Notifies the changes with a single statement. Postgres delivers them once the statement
+     * commits, in order.
+     */
+    public Mono<Void> notify(List<AnimeChange> changes) {
+        return Mono.fromCallable(() -> {
+                    String[] payloads = new String[changes.size()];
+                    for (int i = 0; i < payloads.length; i++) {
+                        payloads[i] = objectMapper.writeValueAsString(changes.get(i));
+                    }
+                    return payloads;
+                })
+                .flatMap(payloads -> databaseClient.sql("SELECT pg_notify('" + CHANNEL + "', payload) FROM unnest(:payloads) AS payload")
+                        .bind("payloads", payloads)
+                        .then());
+    }
+
+    /**
+     * Emits the changes notified by every node, including this one, until cancelled.
+     */
+    public Flux<AnimeChange> listen() {
+        return Flux.usingWhen(Mono.defer(() -> postgres().create()),
+                        connection -> connection.createStatement("LISTEN " + CHANNEL)
+                                .execute()
+                                .flatMap(PostgresqlResult::getRowsUpdated)
+                                .thenMany(connection.getNotifications()),
+                        PostgresqlConnection::close)
+                .concatMap(notification -> read(notification.getParameter()));
+    }
+
+    private Mono<AnimeChange> read(String payload) {
+        try {
+            return Mono.just(objectMapper.readValue(payload, AnimeChange.class));
+        } catch (JsonProcessingException e) {
+            log.warn("Skipping unreadable anime change {}", payload, e);
+            return Mono.empty();
+        }
+    }
+
+    /**
+     * Unwraps the pool, the routing and the timing down to the driver.
+     */
+    @SuppressWarnings("unchecked")
+    private PostgresqlConnectionFactory postgres() {
+        Object unwrapped = connectionFactory;
+        while (!(unwrapped instanceof PostgresqlConnectionFactory) && unwrapped instanceof Wrapped) {
+            unwrapped = ((Wrapped<Object>) unwrapped).unwrap();
+        }
+        if (!(unwrapped instanceof PostgresqlConnectionFactory)) {
+            throw new IllegalStateException("The postgres relay of anime changes needs a Postgres connection factory");
+        }
+        return (PostgresqlConnectionFactory) unwrapped;
+    }
+}
@@ -0,0 +1,57 @@
+package br.com.pehenmo.springwebfluxessentials.repository;
+
+import br.com.pehenmo.springwebfluxessentials.dto.AnimeChange;
+import br.com.pehenmo.springwebfluxessentials.entity.Anime;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public interface AnimeRepositoryCustom {
+
+    /**
+     * Streams every anime ordered by id, fetching {@code fetchSize} rows per round trip
+     * so that subscriber demand drives the reads on the database cursor.
+     */
+    Flux<Anime> streamAll(int fetchSize);
+
+    /**
+     * Inserts new animes with one multi-row {@code INSERT ... RETURNING} per chunk of
+     * {@code chunkSize} rows, emitting the inserted animes with their generated ids.
+     */
+    Flux<Anime> insertAll(List<Anime> animes, int chunkSize);
+
+    /**
+     * Inserts the animes whose id does not exist and renames the others with one multi-row
+     * {@code INSERT ... ON CONFLICT (id) DO UPDATE} per chunk of {@code chunkSize} rows,
+     * emitting a change for every anime inserted or renamed. Animes already up to date are
+     * not written. Every anime must have an id, and the ids must be distinct.
+     */
+    Flux<AnimeChange> upsertAll(List<Anime> animes, int chunkSize);
+
+    /**
+     * Renames the animes with one set-based {@code UPDATE}, emitting the ids of those that exist.
+     * The ids must be distinct.
+     */
+    Flux<Integer> updateNamesById(List<Anime> animes);
+
+    /**
+     * Deletes the animes with one {@code DELETE ... WHERE id = ANY(...)}, emitting the ids of
+     * those that existed.
+     */
+    Flux<Integer> removeAllById(List<Integer> ids);
+
+    /**
+     * Finds the animes whose name contains {@code query}, ignoring case, ranked by where the
+     * match starts (prefix matches first), then by name length and id. Only the first
+     * {@code candidates} matches by id are ranked, so a query matching most of the catalog
+     * never sorts all of it.
+     */
+    Flux<Anime> search(String query, int candidates, int offset, int limit);
+
+    /**
+     * Returns a version of the catalog that changes whenever an anime is added, renamed or
+     * removed, without reading the animes.
+     */
+    Mono<String> catalogVersion();
+}
@@ -0,0 +1,168 @@
+package br.com.pehenmo.springwebfluxessentials.repository;
+
+import br.com.pehenmo.springwebfluxessentials.dto.AnimeChange;
+import br.com.pehenmo.springwebfluxessentials.entity.Anime;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RequiredArgsConstructor
+public class AnimeRepositoryCustomImpl implements AnimeRepositoryCustom {
+
+    private final DatabaseClient databaseClient;
+
+    @Override
+    public Flux<Anime> streamAll(int fetchSize) {
+        return databaseClient.sql("SELECT id, name FROM anime ORDER BY id")
+                .filter(statement -> statement.fetchSize(fetchSize))
+                .map(AnimeRepositoryCustomImpl::toAnime)
+                .all();
+    }
+
+    @Override
+    public Flux<Anime> insertAll(List<Anime> animes, int chunkSize) {
+        return Flux.fromIterable(animes)
+                .buffer(chunkSize)
+                .concatMap(this::insertChunk);
+    }
+
+    private Flux<Anime> insertChunk(List<Anime> chunk) {
+        StringBuilder sql = new StringBuilder("INSERT INTO anime (name) VALUES ");
+        for (int i = 0; i < chunk.size(); i++) {
+            sql.append(i == 0 ? "(:name" : ", (:name").append(i).append(')');
+        }
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString())
+                .filter(statement -> statement.returnGeneratedValues("id", "name"));
+        for (int i = 0; i < chunk.size(); i++) {
+            String name = chunk.get(i).getName();
+            spec = name == null ? spec.bindNull("name" + i, String.class) : spec.bind("name" + i, name);
+        }
+        return spec.map(AnimeRepositoryCustomImpl::toAnime).all();
+    }
+
+    /**
+     * The update is skipped for the rows whose name does not change, so a replayed payload
+     * writes nothing, and {@code xmax} is only 0 for the rows the statement inserted. Inserting
+     * ids given by the client does not advance the id sequence, so it is moved past them.
+     */
+    @Override
+    public Flux<AnimeChange> upsertAll(List<Anime> animes, int chunkSize) {
+        return Flux.defer(() -> {
+            AtomicInteger maxInsertedId = new AtomicInteger();
+            return Flux.fromIterable(animes)
+                    .buffer(chunkSize)
+                    .concatMap(this::upsertChunk)
+                    .doOnNext(change -> {
+                        if (change.getType() == AnimeChange.Type.CREATED) {
+                            maxInsertedId.accumulateAndGet(change.getId(), Math::max);
+                        }
+                    })
+                    .concatWith(Mono.defer(() -> advanceSequence(maxInsertedId.get())).then(Mono.empty()));
+        });
+    }
+
+    private Mono<Void> advanceSequence(int insertedId) {
+        if (insertedId == 0) {
+            return Mono.empty();
+        }
+        return databaseClient.sql("SELECT setval(seq, GREATEST(:id, COALESCE(pg_sequence_last_value(seq), 0))) "
+                        + "FROM (SELECT pg_get_serial_sequence('anime', 'id')::regclass AS seq) AS sequence")
+                .bind("id", insertedId)
+                .then();
+    }
+
+    private Flux<AnimeChange> upsertChunk(List<Anime> chunk) {
+        StringBuilder sql = new StringBuilder("INSERT INTO anime (id, name) VALUES ");
+        for (int i = 0; i < chunk.size(); i++) {
+            sql.append(i == 0 ? "(:id" : ", (:id").append(i).append(", :name").append(i).append(')');
+        }
+        sql.append(" ON CONFLICT (id) DO UPDATE SET name = EXCLUDED.name WHERE anime.name IS DISTINCT FROM EXCLUDED.name")
+                .append(" RETURNING id, name, (xmax = 0) AS inserted");
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString());
+        for (int i = 0; i < chunk.size(); i++) {
+            Anime anime = chunk.get(i);
+            spec = spec.bind("id" + i, anime.getId());
+            spec = anime.getName() == null ? spec.bindNull("name" + i, String.class) : spec.bind("name" + i, anime.getName());
+        }
+        return spec.map((row, metadata) -> Boolean.TRUE.equals(row.get("inserted", Boolean.class)) ?
+                        AnimeChange.created(toAnime(row, metadata)) :
+                        AnimeChange.updated(toAnime(row, metadata)))
+                .all();
+    }
+
+    /**
+     * Each anime has its own name, so the ids and names are bound as two arrays and joined
+     * with {@code unnest} instead of filtering on {@code id = ANY(...)}.
+     */
+    @Override
+    public Flux<Integer> updateNamesById(List<Anime> animes) {
+        if (animes.isEmpty()) {
+            return Flux.empty();
+        }
+        return databaseClient.sql("UPDATE anime SET name = changes.name "
+                        + "FROM unnest(CAST(:ids AS integer[]), CAST(:names AS text[])) AS changes(id, name) "
+                        + "WHERE anime.id = changes.id RETURNING anime.id")
+                .bind("ids", animes.stream().map(Anime::getId).toArray(Integer[]::new))
+                .bind("names", animes.stream().map(Anime::getName).toArray(String[]::new))
+                .map(row -> row.get("id", Integer.class))
+                .all();
+    }
+
+    @Override
+    public Flux<Integer> removeAllById(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Flux.empty();
+        }
+        return databaseClient.sql("DELETE FROM anime WHERE id = ANY(:ids) RETURNING id")
+                .bind("ids", ids.toArray(Integer[]::new))
+                .map(row -> row.get("id", Integer.class))
+                .all();
+    }
+
+    /**
+     * The {@code ILIKE '%...%'} filter is served by the trigram index created in
+     * {@code db/anime-name-search.sql}. The inner query stops at the first {@code candidates}
+     * matches in id order, which keeps the pages stable, and only those are ranked.
+     */
+    @Override
+    public Flux<Anime> search(String query, int candidates, int offset, int limit) {
+        return databaseClient.sql("SELECT id, name FROM anime WHERE id IN "
+                        + "(SELECT id FROM anime WHERE name ILIKE :pattern ORDER BY id LIMIT :candidates) "
+                        + "ORDER BY POSITION(LOWER(:query) IN LOWER(name)), LENGTH(name), id "
+                        + "LIMIT :limit OFFSET :offset")
+                .bind("pattern", "%" + escapeLike(query) + "%")
+                .bind("candidates", candidates)
+                .bind("query", query)
+                .bind("limit", limit)
+                .bind("offset", offset)
+                .map(AnimeRepositoryCustomImpl::toAnime)
+                .all();
+    }
+
+    /**
+     * Reads the single row kept up to date by the trigger created in
+     * {@code db/anime-catalog-version.sql}.
+     */
+    @Override
+    public Mono<String> catalogVersion() {
+        return databaseClient.sql("SELECT version FROM anime_catalog_version")
+                .map(row -> String.valueOf(row.get("version", Long.class)))
+                .one();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    static Anime toAnime(Row row, RowMetadata metadata) {
+        return new Anime(row.get("id", Integer.class), row.get("name", String.class));
+    }
+}
@@ -0,0 +1,384 @@
+package br.com.pehenmo.springwebfluxessentials.repository;
+
+import br.com.pehenmo.springwebfluxessentials.config.AnimeProperties;
+import br.com.pehenmo.springwebfluxessentials.dto.AnimeChange;
+import br.com.pehenmo.springwebfluxessentials.entity.Anime;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * {@link AnimeRepository} holding the whole catalog in a {@link ConcurrentSkipListMap}, for
+ * the {@code edge} profile where the catalog is mostly static and reads should not go over
+ * the network. Reads never block. Writes are serialized on a monitor and each statement,
+ * batches included, is applied as a whole or not at all, but there are no transactions: a
+ * reader may see a batch half applied, and a failed statement does not undo the earlier
+ * statements of the same service call.
+ * <p>
+ * Names are indexed by trigram for {@link #search}, and every change bumps the catalog version.
+ * <p>
+ * When {@code anime.edge.snapshot} is set, the catalog is loaded from that file on startup
+ * and written back to it on shutdown.
+ */
+@Slf4j
+@Primary
+@Profile("edge")
+@Repository
+public class InMemoryAnimeRepository implements AnimeRepository, InitializingBean, DisposableBean {
+
+    private static final TypeReference<List<Anime>> ANIME_LIST = new TypeReference<>() {
+    };
+
+    private final ConcurrentNavigableMap<Integer, Anime> animes = new ConcurrentSkipListMap<>();
+    private final TrigramIndex names = new TrigramIndex();
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final Object writes = new Object();
+    // starts from the clock, so a restarted instance does not hand out versions seen before
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis());
+    private final ObjectMapper objectMapper;
+    private final Path snapshot;
+
+    public InMemoryAnimeRepository(ObjectMapper objectMapper, AnimeProperties animeProperties) {
+        this.objectMapper = objectMapper;
+        this.snapshot = animeProperties.getEdge().getSnapshot();
+    }
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        if (snapshot != null && Files.exists(snapshot)) {
+            reload(objectMapper.readValue(snapshot.toFile(), ANIME_LIST));
+            log.info("Loaded {} animes from {}", animes.size(), snapshot);
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (snapshot != null) {
+            snapshot(snapshot);
+            log.info("Saved {} animes to {}", animes.size(), snapshot);
+        }
+    }
+
+    /**
+     * Replaces the catalog with the given animes, continuing the ids after the highest one.
+     */
+    public void reload(List<Anime> catalog) {
+        write(() -> {
+            animes.clear();
+            names.clear();
+            version.incrementAndGet();
+            catalog.forEach(anime -> store(copy(anime.getId(), anime)));
+            sequence.set(animes.isEmpty() ? 0 : animes.lastKey());
+        });
+    }
+
+    /**
+     * Writes the catalog to {@code file} as a JSON array, replacing the file only once the
+     * whole catalog has been written.
+     */
+    public void snapshot(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temporary = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        objectMapper.writeValue(temporary.toFile(), new ArrayList<>(animes.values()));
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public Mono<Anime> findById(Integer id) {
+        return Mono.fromSupplier(() -> animes.get(id));
+    }
+
+    @Override
+    public Mono<Anime> findById(Publisher<Integer> id) {
+        return Mono.from(id).flatMap(this::findById);
+    }
+
+    @Override
+    public Mono<Boolean> existsById(Integer id) {
+        return Mono.fromSupplier(() -> animes.containsKey(id));
+    }
+
+    @Override
+    public Mono<Boolean> existsById(Publisher<Integer> id) {
+        return Mono.from(id).flatMap(this::existsById);
+    }
+
+    @Override
+    public Flux<Anime> findAll() {
+        return Flux.fromIterable(animes.values());
+    }
+
+    @Override
+    public Flux<Anime> findAllById(Iterable<Integer> ids) {
+        return findAllById(Flux.fromIterable(ids));
+    }
+
+    @Override
+    public Flux<Anime> findAllById(Publisher<Integer> ids) {
+        return Flux.from(ids).concatMap(this::findById);
+    }
+
+    @Override
+    public Mono<Long> count() {
+        return Mono.fromSupplier(() -> (long) animes.size());
+    }
+
+    @Override
+    public Flux<Anime> findPageAfter(int after, int limit) {
+        return Flux.fromIterable(animes.tailMap(after, false).values())
+                .take(limit, true);
+    }
+
+    @Override
+    public Flux<Anime> streamAll(int fetchSize) {
+        return findAll();
+    }
+
+    @Override
+    public Flux<Anime> search(String query, int candidates, int offset, int limit) {
+        return Flux.defer(() -> {
+            String needle = query.toLowerCase(Locale.ROOT);
+            Collection<Integer> indexed = names.candidates(query);
+            Stream<Anime> animes = indexed == null ?
+                    this.animes.values().stream() :
+                    indexed.stream().sorted().map(this.animes::get).filter(Objects::nonNull);
+            return Flux.fromStream(animes
+                    .filter(anime -> anime.getName() != null && anime.getName().toLowerCase(Locale.ROOT).contains(needle))
+                    .limit(candidates)
+                    .sorted(Comparator.<Anime>comparingInt(anime -> anime.getName().toLowerCase(Locale.ROOT).indexOf(needle))
+                            .thenComparingInt(anime -> anime.getName().length())
+                            .thenComparing(Anime::getId))
+                    .skip(offset)
+                    .limit(limit));
+        });
+    }
+
+    @Override
+    public Mono<String> catalogVersion() {
+        return Mono.fromSupplier(() -> String.valueOf(version.get()));
+    }
+
+    @Override
+    public <S extends Anime> Mono<S> save(S anime) {
+        return Mono.fromSupplier(() -> write(() -> saveOne(anime)));
+    }
+
+    /**
+     * Checks that every anime to update exists before saving any, so a batch with a missing
+     * anime fails without writing anything.
+     */
+    @Override
+    public <S extends Anime> Flux<S> saveAll(Iterable<S> animes) {
+        return Flux.defer(() -> Flux.fromIterable(write(() -> {
+            List<S> batch = new ArrayList<>();
+            for (S anime : animes) {
+                if (anime.getId() != null && !this.animes.containsKey(anime.getId())) {
+                    throw notFound(anime.getId());
+                }
+                batch.add(anime);
+            }
+            batch.forEach(this::saveOne);
+            return batch;
+        })));
+    }
+
+    @Override
+    public <S extends Anime> Flux<S> saveAll(Publisher<S> animes) {
+        return Flux.from(animes).collectList().flatMapMany(this::saveAll);
+    }
+
+    @Override
+    public Flux<Anime> insertAll(List<Anime> animes, int chunkSize) {
+        return Flux.defer(() -> Flux.fromIterable(write(() -> animes.stream()
+                .map(anime -> {
+                    Anime inserted = copy(sequence.incrementAndGet(), anime);
+                    store(inserted);
+                    return inserted;
+                })
+                .collect(Collectors.toList()))));
+    }
+
+    @Override
+    public Flux<AnimeChange> upsertAll(List<Anime> animes, int chunkSize) {
+        return Flux.defer(() -> Flux.fromIterable(write(() -> animes.stream()
+                .map(this::upsert)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()))));
+    }
+
+    @Override
+    public Flux<Integer> updateNamesById(List<Anime> animes) {
+        return Flux.defer(() -> Flux.fromIterable(write(() -> animes.stream()
+                .filter(anime -> replace(copy(anime.getId(), anime)))
+                .map(Anime::getId)
+                .collect(Collectors.toList()))));
+    }
+
+    @Override
+    public Flux<Integer> removeAllById(List<Integer> ids) {
+        return Flux.defer(() -> Flux.fromIterable(write(() -> ids.stream()
+                .filter(this::remove)
+                .collect(Collectors.toList()))));
+    }
+
+    @Override
+    public Mono<Integer> updateNameById(int id, String name) {
+        return Mono.fromSupplier(() -> write(() -> replace(new Anime(id, name)) ? 1 : 0));
+    }
+
+    @Override
+    public Mono<Integer> removeById(int id) {
+        return Mono.fromSupplier(() -> write(() -> remove(id) ? 1 : 0));
+    }
+
+    @Override
+    public Mono<Void> deleteById(Integer id) {
+        return Mono.fromRunnable(() -> write(() -> remove(id)));
+    }
+
+    @Override
+    public Mono<Void> deleteById(Publisher<Integer> id) {
+        return Mono.from(id).flatMap(this::deleteById);
+    }
+
+    @Override
+    public Mono<Void> delete(Anime anime) {
+        return deleteById(anime.getId());
+    }
+
+    @Override
+    public Mono<Void> deleteAllById(Iterable<? extends Integer> ids) {
+        return Mono.fromRunnable(() -> write(() -> ids.forEach(this::remove)));
+    }
+
+    @Override
+    public Mono<Void> deleteAll(Iterable<? extends Anime> animes) {
+        return Mono.fromRunnable(() -> write(() -> animes.forEach(anime -> remove(anime.getId()))));
+    }
+
+    @Override
+    public Mono<Void> deleteAll(Publisher<? extends Anime> animes) {
+        return Flux.from(animes).collectList().flatMap(this::deleteAll);
+    }
+
+    @Override
+    public Mono<Void> deleteAll() {
+        return Mono.fromRunnable(() -> write(() -> {
+            animes.clear();
+            names.clear();
+            version.incrementAndGet();
+        }));
+    }
+
+    /**
+     * Runs a statement while holding the write monitor, which is only ever held for the
+     * in-memory updates of a single statement.
+     */
+    private <T> T write(Supplier<T> statement) {
+        synchronized (writes) {
+            return statement.get();
+        }
+    }
+
+    private void write(Runnable statement) {
+        synchronized (writes) {
+            statement.run();
+        }
+    }
+
+    private <S extends Anime> S saveOne(S anime) {
+        if (anime.getId() == null) {
+            anime.setId(sequence.incrementAndGet());
+            store(copy(anime.getId(), anime));
+        } else if (!replace(copy(anime.getId(), anime))) {
+            throw notFound(anime.getId());
+        }
+        return anime;
+    }
+
+    private static TransientDataAccessResourceException notFound(Integer id) {
+        return new TransientDataAccessResourceException(String.format(
+                "Failed to update table [anime]; Row with Id [%s] does not exist", id));
+    }
+
+    private void store(Anime anime) {
+        Anime previous = animes.put(anime.getId(), anime);
+        names.update(anime.getId(), previous == null ? null : previous.getName(), anime.getName());
+        version.incrementAndGet();
+    }
+
+    /**
+     * Replaces an existing anime and tells whether it existed.
+     */
+    private boolean replace(Anime anime) {
+        Anime previous = animes.replace(anime.getId(), anime);
+        if (previous == null) {
+            return false;
+        }
+        names.update(anime.getId(), previous.getName(), anime.getName());
+        version.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Inserts or renames the anime, returning null when it is already up to date.
+     */
+    private AnimeChange upsert(Anime anime) {
+        Anime upserted = copy(anime.getId(), anime);
+        Anime previous = animes.get(upserted.getId());
+        if (previous != null && Objects.equals(previous.getName(), upserted.getName())) {
+            return null;
+        }
+        store(upserted);
+        if (previous == null) {
+            sequence.accumulateAndGet(upserted.getId(), Math::max);
+            return AnimeChange.created(upserted);
+        }
+        return AnimeChange.updated(upserted);
+    }
+
+    private boolean remove(Integer id) {
+        Anime previous = animes.remove(id);
+        if (previous == null) {
+            return false;
+        }
+        names.update(id, previous.getName(), null);
+        version.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Stores its own instance, so callers changing the anime they passed cannot change the catalog.
+     */
+    private static Anime copy(Integer id, Anime anime) {
+        return new Anime(id, anime.getName());
+    }
+}
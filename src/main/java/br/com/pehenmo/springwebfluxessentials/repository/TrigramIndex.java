@@ -0,0 +1,88 @@
+package br.com.pehenmo.springwebfluxessentials.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Case-insensitive index of names by their three-letter substrings, giving the ids whose name
+ * may contain a query of three letters or more without looking at every name.
+ * <p>
+ * Updates are not atomic with the writes to the catalog, so a name may briefly be found under
+ * stale trigrams: callers must check the candidates against the current names.
+ */
+class TrigramIndex {
+
+    static final int GRAM = 3;
+
+    private final Map<String, Set<Integer>> postings = new ConcurrentHashMap<>();
+
+    void update(Integer id, String previousName, String name) {
+        Set<String> grams = trigrams(name);
+        for (String gram : grams) {
+            postings.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+        for (String gram : trigrams(previousName)) {
+            if (!grams.contains(gram)) {
+                Set<Integer> ids = postings.get(gram);
+                if (ids != null) {
+                    ids.remove(id);
+                }
+            }
+        }
+    }
+
+    void clear() {
+        postings.clear();
+    }
+
+    /**
+     * Returns the ids of the names holding every trigram of {@code query}, or null when the
+     * query is too short to be looked up in the index.
+     */
+    Collection<Integer> candidates(String query) {
+        Set<String> grams = trigrams(query);
+        if (grams.isEmpty()) {
+            return null;
+        }
+        List<Set<Integer>> sets = new ArrayList<>(grams.size());
+        for (String gram : grams) {
+            Set<Integer> ids = postings.get(gram);
+            if (ids == null || ids.isEmpty()) {
+                return Collections.emptyList();
+            }
+            sets.add(ids);
+        }
+        sets.sort(Comparator.comparingInt(Set::size));
+        List<Integer> candidates = new ArrayList<>();
+        for (Integer id : sets.get(0)) {
+            boolean inAll = true;
+            for (int i = 1; i < sets.size() && inAll; i++) {
+                inAll = sets.get(i).contains(id);
+            }
+            if (inAll) {
+                candidates.add(id);
+            }
+        }
+        return candidates;
+    }
+
+    static Set<String> trigrams(String value) {
+        if (value == null || value.length() < GRAM) {
+            return Collections.emptySet();
+        }
+        String lowerCase = value.toLowerCase(Locale.ROOT);
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= lowerCase.length(); i++) {
+            grams.add(lowerCase.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+}
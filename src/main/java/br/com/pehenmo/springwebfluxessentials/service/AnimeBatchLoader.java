@@ -0,0 +1,102 @@
+package br.com.pehenmo.springwebfluxessentials.service;
+
+import br.com.pehenmo.springwebfluxessentials.config.AnimeProperties;
+import br.com.pehenmo.springwebfluxessentials.entity.Anime;
+import br.com.pehenmo.springwebfluxessentials.repository.AnimeRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coalesces the lookups by id made within the batch window into a single {@code findAllById}
+ * query, as a DataLoader does. The first lookup of a window schedules the flush, and a full
+ * batch is flushed right away. A batch of a single id is looked up with {@code findById}.
+ * <p>
+ * The queries run outside the subscribers' context, so they must not be part of a transaction.
+ * They are sent to the primary, as the animes loaded fill the cache: an anime read from a lagging
+ * replica would be served stale until it expires.
+ */
+@Component
+public class AnimeBatchLoader {
+
+    private final AnimeRepository animeRepository;
+    private final Duration window;
+    private final int maxBatchSize;
+
+    private final Queue<Lookup> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    public AnimeBatchLoader(AnimeRepository animeRepository, AnimeProperties animeProperties) {
+        this.animeRepository = animeRepository;
+        this.window = animeProperties.getLookup().getBatchWindow();
+        this.maxBatchSize = animeProperties.getLookup().getMaxBatchSize();
+    }
+
+    public Mono<Anime> load(Integer id) {
+        if (window.isZero()) {
+            return animeRepository.findById(id);
+        }
+        return Mono.create(sink -> {
+            queue.add(new Lookup(id, sink));
+            if (queued.incrementAndGet() == maxBatchSize) {
+                Schedulers.parallel().schedule(this::flush);
+            } else if (flushScheduled.compareAndSet(false, true)) {
+                Schedulers.parallel().schedule(this::flush, window.toNanos(), TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+
+    private void flush() {
+        // lookups queued from now on need a flush of their own
+        flushScheduled.set(false);
+        List<Lookup> batch = new ArrayList<>();
+        Lookup lookup;
+        while ((lookup = queue.poll()) != null) {
+            queued.decrementAndGet();
+            batch.add(lookup);
+            if (batch.size() == maxBatchSize) {
+                execute(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            execute(batch);
+        }
+    }
+
+    private void execute(List<Lookup> batch) {
+        Mono<Map<Integer, Anime>> found;
+        if (batch.size() == 1) {
+            found = Mono.defer(() -> animeRepository.findById(batch.get(0).id))
+                    .map(anime -> Map.of(anime.getId(), anime));
+        } else {
+            Set<Integer> ids = new LinkedHashSet<>();
+            batch.forEach(lookup -> ids.add(lookup.id));
+            found = Mono.defer(() -> animeRepository.findAllById(ids).collectMap(Anime::getId));
+        }
+        found.defaultIfEmpty(Map.of())
+                .subscribe(animes -> batch.forEach(lookup -> lookup.sink.success(animes.get(lookup.id))),
+                        error -> batch.forEach(lookup -> lookup.sink.error(error)));
+    }
+
+    @RequiredArgsConstructor
+    private static final class Lookup {
+        private final Integer id;
+        private final MonoSink<Anime> sink;
+    }
+}
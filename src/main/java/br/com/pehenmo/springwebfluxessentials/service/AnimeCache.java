@@ -0,0 +1,96 @@
+package br.com.pehenmo.springwebfluxessentials.service;
+
+import br.com.pehenmo.springwebfluxessentials.config.AnimeProperties;
+import br.com.pehenmo.springwebfluxessentials.entity.Anime;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Read-through cache of animes by id. Concurrent lookups of the same id share a single
+ * load, and animes that do not exist are not cached.
+ * <p>
+ * The hits, misses and evictions are published as the {@code cache.*} meters tagged
+ * {@code cache=anime}.
+ */
+@Component
+public class AnimeCache implements MeterBinder {
+
+    private final AsyncCache<Integer, Anime> cache;
+
+    public AnimeCache(AnimeProperties animeProperties) {
+        AnimeProperties.Cache properties = animeProperties.getCache();
+        this.cache = properties.isEnabled() ?
+                Caffeine.newBuilder()
+                        .maximumSize(properties.getMaximumSize())
+                        .expireAfterWrite(properties.getTtl())
+                        .recordStats()
+                        .buildAsync() :
+                null;
+    }
+
+    public Mono<Anime> get(Integer id, Function<Integer, Mono<Anime>> loader) {
+        if (cache == null) {
+            return loader.apply(id);
+        }
+        // thenApply gives every subscriber its own future, so a cancelled subscriber
+        // does not cancel the load shared with the others
+        return Mono.fromFuture(() -> load(id, loader).thenApply(Function.identity()));
+    }
+
+    /**
+     * Registers the pending load before subscribing to the loader rather than loading inside
+     * {@code cache.get}, as the loader may complete synchronously on a thread that then
+     * writes to the cache, which the map does not allow while it is computing an entry.
+     */
+    private CompletableFuture<Anime> load(Integer id, Function<Integer, Mono<Anime>> loader) {
+        CompletableFuture<Anime> cached = cache.getIfPresent(id);
+        if (cached != null) {
+            return cached;
+        }
+        CompletableFuture<Anime> pending = new CompletableFuture<>();
+        cached = cache.asMap().putIfAbsent(id, pending);
+        if (cached != null) {
+            return cached;
+        }
+        loader.apply(id).subscribe(pending::complete, pending::completeExceptionally, () -> pending.complete(null));
+        return pending;
+    }
+
+    public void put(Anime anime) {
+        if (cache != null) {
+            cache.put(anime.getId(), CompletableFuture.completedFuture(anime));
+        }
+    }
+
+    public void invalidate(Integer id) {
+        if (cache != null) {
+            cache.synchronous().invalidate(id);
+        }
+    }
+
+    public void invalidateAll() {
+        if (cache != null) {
+            cache.synchronous().invalidateAll();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (cache != null) {
+            CaffeineCacheMetrics.monitor(registry, cache.synchronous(), "anime");
+        }
+    }
+
+    public CacheStats stats() {
+        return cache == null ? CacheStats.empty() : cache.synchronous().stats();
+    }
+}
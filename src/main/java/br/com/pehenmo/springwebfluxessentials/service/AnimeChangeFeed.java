@@ -0,0 +1,121 @@
+package br.com.pehenmo.springwebfluxessentials.service;
+
+import br.com.pehenmo.springwebfluxessentials.config.AnimeProperties;
+import br.com.pehenmo.springwebfluxessentials.dto.AnimeChange;
+import br.com.pehenmo.springwebfluxessentials.repository.AnimeChangeNotifications;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.Exceptions;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Multicasts the changes of the catalog to the subscribers of {@code GET /animes/changes}.
+ * The sink only delivers what a subscriber requested, so every subscriber has its own
+ * bounded buffer and a slow one never holds back the others.
+ * <p>
+ * Changes are published once written. With the postgres relay they are notified to every
+ * node and multicast when the notification comes back, otherwise they are multicast right
+ * away. A change that cannot be published is logged, the write it follows is not failed.
+ * <p>
+ * Publishes the {@code anime.changes.subscribers} gauge and the {@code anime.changes.dropped}
+ * and {@code anime.changes.disconnected} counters of the overflows.
+ */
+@Slf4j
+@Component
+public class AnimeChangeFeed implements MeterBinder, InitializingBean, DisposableBean {
+
+    private final Sinks.Many<AnimeChange> sink = Sinks.many().multicast().directBestEffort();
+    private final AnimeProperties.Changes properties;
+    private final AnimeChangeNotifications notifications;
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder disconnected = new LongAdder();
+    private Disposable listening;
+
+    public AnimeChangeFeed(AnimeProperties animeProperties, Optional<AnimeChangeNotifications> notifications) {
+        this.properties = animeProperties.getChanges();
+        this.notifications = notifications.orElse(null);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (notifications != null) {
+            listening = notifications.listen()
+                    .doOnNext(this::emit)
+                    .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                            .maxBackoff(Duration.ofSeconds(30))
+                            .doBeforeRetry(signal -> log.warn("Listening to anime changes failed, retrying", signal.failure())))
+                    .repeatWhen(completed -> completed.delayElements(Duration.ofSeconds(1)))
+                    .subscribe();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (listening != null) {
+            listening.dispose();
+        }
+        sink.tryEmitComplete();
+    }
+
+    /**
+     * Emits the changes published from now on, applying the {@code anime.changes.overflow}
+     * policy once {@code anime.changes.buffer-size} of them are waiting for this subscriber.
+     */
+    public Flux<AnimeChange> changes() {
+        Flux<AnimeChange> changes = sink.asFlux();
+        if (properties.getOverflow() == AnimeProperties.ChangesOverflow.DISCONNECT) {
+            return changes.onBackpressureBuffer(properties.getBufferSize())
+                    .doOnError(Exceptions::isOverflow, error -> disconnected.increment());
+        }
+        return changes.onBackpressureBuffer(properties.getBufferSize(), change -> dropped.increment(),
+                BufferOverflowStrategy.DROP_OLDEST);
+    }
+
+    public Mono<Void> publish(List<AnimeChange> changes) {
+        if (changes.isEmpty()) {
+            return Mono.empty();
+        }
+        if (notifications == null) {
+            return Mono.fromRunnable(() -> changes.forEach(this::emit));
+        }
+        return notifications.notify(changes)
+                .onErrorResume(error -> {
+                    log.warn("Failed to notify {} anime changes, only publishing them locally", changes.size(), error);
+                    return Mono.fromRunnable(() -> changes.forEach(this::emit));
+                });
+    }
+
+    private void emit(AnimeChange change) {
+        // writes complete on many threads, the sink needs them serialized
+        sink.emitNext(change, Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1)));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("anime.changes.subscribers", sink, Sinks.Many::currentSubscriberCount)
+                .description("Subscribers of the anime changes")
+                .register(registry);
+        FunctionCounter.builder("anime.changes.dropped", dropped, LongAdder::sum)
+                .description("Changes dropped from the buffer of a slow subscriber")
+                .register(registry);
+        FunctionCounter.builder("anime.changes.disconnected", disconnected, LongAdder::sum)
+                .description("Slow subscribers disconnected when their buffer was full")
+                .register(registry);
+    }
+}
@@ -1,58 +1,311 @@
 package br.com.pehenmo.springwebfluxessentials.service;
 
+import br.com.pehenmo.springwebfluxessentials.config.AnimeProperties;
+import br.com.pehenmo.springwebfluxessentials.config.ReadReplicas;
+import br.com.pehenmo.springwebfluxessentials.dto.AnimeBulkResult;
+import br.com.pehenmo.springwebfluxessentials.dto.AnimeChange;
+import br.com.pehenmo.springwebfluxessentials.dto.AnimeChunkResult;
+import br.com.pehenmo.springwebfluxessentials.dto.AnimePage;
+import br.com.pehenmo.springwebfluxessentials.dto.AnimeRowError;
+import br.com.pehenmo.springwebfluxessentials.dto.AnimeUpsertResult;
 import br.com.pehenmo.springwebfluxessentials.entity.Anime;
+import br.com.pehenmo.springwebfluxessentials.exception.AnimeNotFoundException;
+import br.com.pehenmo.springwebfluxessentials.exception.BatchValidationException;
+import br.com.pehenmo.springwebfluxessentials.exception.StacklessResponseStatusException;
 import br.com.pehenmo.springwebfluxessentials.repository.AnimeRepository;
-import io.netty.util.internal.StringUtil;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.server.ResponseStatusException;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Service
 @RequiredArgsConstructor
 public class AnimeService {
     private final AnimeRepository animeRepository;
+    private final AnimeProperties animeProperties;
+    private final AnimeCache animeCache;
+    private final AnimeSingleFlight animeSingleFlight;
+    private final AnimeBatchLoader animeBatchLoader;
+    private final AnimeChangeFeed animeChangeFeed;
+    private final TransactionalOperator transactionalOperator;
+    private final AnimeValidator animeValidator;
 
-    public Flux<Anime> findAll() {
-        return animeRepository.findAll();
+    /**
+     * Returns the version of the whole catalog, telling whether it changed without listing it.
+     */
+    public Mono<String> findCatalogVersion() {
+        return animeRepository.catalogVersion()
+                .contextWrite(ReadReplicas::preferReplica);
     }
 
+    /**
+     * Emits the changes of the catalog made from now on.
+     */
+    public Flux<AnimeChange> changes() {
+        return animeChangeFeed.changes();
+    }
+
+    public Flux<Anime> streamAll() {
+        int fetchSize = animeProperties.getStream().getFetchSize();
+        return animeRepository.streamAll(fetchSize)
+                .limitRate(fetchSize)
+                .contextWrite(ReadReplicas::preferReplica);
+    }
+
+    public Mono<AnimePage> findPage(Integer after, Integer limit) {
+        AnimeProperties.Page page = animeProperties.getPage();
+        int size = Math.min(Optional.ofNullable(limit).orElse(page.getDefaultSize()), page.getMaxSize());
+        if (size < 1) {
+            return Mono.error(new StacklessResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid page size"));
+        }
+        return animeRepository.findPageAfter(Optional.ofNullable(after).orElse(0), size + 1)
+                .collectList()
+                .map(animes -> AnimePage.of(animes, size))
+                .contextWrite(ReadReplicas::preferReplica);
+    }
+
+    /**
+     * Finds the animes whose name contains the query, best matches first, paged by number.
+     * Only the first {@code anime.search.max-results} matches are ranked and returned.
+     */
+    public Flux<Anime> search(String query, Integer page, Integer limit) {
+        if (query == null || query.isBlank()) {
+            return Flux.error(new StacklessResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid search query"));
+        }
+        AnimeProperties.Page pages = animeProperties.getPage();
+        int size = Math.min(Optional.ofNullable(limit).orElse(pages.getDefaultSize()), pages.getMaxSize());
+        int number = Optional.ofNullable(page).orElse(0);
+        if (size < 1 || number < 0) {
+            return Flux.error(new StacklessResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid page size"));
+        }
+        long offset = (long) number * size;
+        int maxResults = animeProperties.getSearch().getMaxResults();
+        if (offset >= maxResults) {
+            return Flux.empty();
+        }
+        return animeRepository.search(query.strip(), maxResults, (int) offset, (int) Math.min(size, maxResults - offset))
+                .contextWrite(ReadReplicas::preferReplica);
+    }
+
+    /**
+     * Finds the animes with the given ids with a single query, in the order of the ids,
+     * skipping the ids that do not exist and the repeated ones. The query may go to a read
+     * replica, so the animes found are not cached.
+     */
+    public Flux<Anime> findAllById(List<Integer> ids) {
+        if (ids.isEmpty() || ids.size() > animeProperties.getLookup().getMaxIds() || ids.stream().anyMatch(Objects::isNull)) {
+            return Flux.error(new StacklessResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid ids"));
+        }
+        Set<Integer> distinct = new LinkedHashSet<>(ids);
+        return animeRepository.findAllById(distinct)
+                .contextWrite(ReadReplicas::preferReplica)
+                .collectMap(Anime::getId)
+                .flatMapIterable(found -> distinct.stream()
+                        .map(found::get)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList()));
+    }
+
+    /**
+     * Concurrent lookups of the same id share one lookup, and the misses of the cache are
+     * coalesced with the other lookups of the batch window into one query. Requests that must
+     * read from the primary look the anime up on their own and refresh the cache with it.
+     */
     public Mono<Anime> findById(Integer id){
-        return animeRepository.findById(id)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Anime not found")));
+        return Mono.deferContextual(context -> ReadReplicas.isPrimaryRequired(context) ?
+                        animeRepository.findById(id).doOnNext(animeCache::put) :
+                        animeSingleFlight.get(id, key -> animeCache.get(key, animeBatchLoader::load)))
+                .switchIfEmpty(Mono.error(AnimeNotFoundException::new));
     }
 
     public Mono<Anime> save(Anime anime){
-        return animeRepository.save(anime);
+        boolean created = anime.getId() == null;
+        return animeRepository.save(anime)
+                .doOnNext(animeCache::put)
+                .flatMap(saved -> animeChangeFeed.publish(List.of(created ? AnimeChange.created(saved) : AnimeChange.updated(saved)))
+                        .thenReturn(saved));
     }
 
-    @Transactional
+    /**
+     * Validates the whole batch before writing it, then saves it in a single transaction,
+     * evicting and emitting the animes once it is committed, so a concurrent lookup cannot
+     * cache a row the transaction is still writing.
+     */
     public Flux<Anime> saveAll(List<Anime> animes) {
-        return animeRepository.saveAll(animes)
-                .doOnNext(anime -> throwResponseStatusExceptionWhenEmptyName(anime));
+        return Flux.defer(() -> {
+            List<AnimeRowError> errors = animeValidator.validate(animes, 0);
+            if (!errors.isEmpty()) {
+                return Flux.error(new BatchValidationException(errors));
+            }
+            // the repository may set the ids of the animes it inserts
+            List<Boolean> created = animes.stream().map(anime -> anime.getId() == null).collect(Collectors.toList());
+            Flux<Anime> saved = created.stream().allMatch(Boolean::booleanValue) ?
+                    animeRepository.insertAll(animes, animeProperties.getBatch().getChunkSize()) :
+                    animeRepository.saveAll(animes);
+            return saved
+                    .collectList()
+                    .as(transactionalOperator::transactional)
+                    .doOnNext(committed -> committed.forEach(anime -> animeCache.invalidate(anime.getId())))
+                    .flatMapMany(committed -> animeChangeFeed.publish(IntStream.range(0, committed.size())
+                                    .mapToObj(i -> created.get(i) ? AnimeChange.created(committed.get(i)) : AnimeChange.updated(committed.get(i)))
+                                    .collect(Collectors.toList()))
+                            .thenMany(Flux.fromIterable(committed)));
+        });
+    }
+
+    /**
+     * Inserts the missing animes and renames the existing ones by id in a single transaction
+     * without reading them first, the animes already up to date being left untouched, so
+     * replaying a payload writes nothing. Every anime must carry its id, as an anime without
+     * one would be inserted again on every replay. An id given more than once is upserted with
+     * its last name. The animes changed are evicted from the cache once the transaction commits.
+     */
+    public Mono<AnimeUpsertResult> upsertAll(List<Anime> animes) {
+        return Mono.defer(() -> {
+            List<AnimeRowError> errors = animeValidator.validateKeyed(animes, 0);
+            if (!errors.isEmpty()) {
+                return Mono.error(new BatchValidationException(errors));
+            }
+            Map<Integer, Anime> distinct = new LinkedHashMap<>();
+            animes.forEach(anime -> distinct.put(anime.getId(), anime));
+            return animeRepository.upsertAll(new ArrayList<>(distinct.values()), animeProperties.getBatch().getChunkSize())
+                    .collectList()
+                    .as(transactionalOperator::transactional)
+                    .doOnNext(changes -> changes.forEach(change -> animeCache.invalidate(change.getId())))
+                    .flatMap(changes -> {
+                        int inserted = (int) changes.stream().filter(change -> change.getType() == AnimeChange.Type.CREATED).count();
+                        return animeChangeFeed.publish(changes)
+                                .thenReturn(new AnimeUpsertResult(inserted, changes.size() - inserted, distinct.size() - changes.size()));
+                    });
+        });
+    }
+
+    /**
+     * Renames the animes with a single statement and transaction instead of one update per
+     * anime, reporting the ids that do not exist. An id given more than once is renamed with
+     * its last name. The animes renamed are evicted from the cache once the transaction commits.
+     */
+    public Mono<AnimeBulkResult> updateAll(List<Anime> animes) {
+        return Mono.defer(() -> {
+            if (animes.isEmpty() || animes.stream().anyMatch(anime -> anime.getId() == null)) {
+                return Mono.error(new StacklessResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid ids"));
+            }
+            List<AnimeRowError> errors = animeValidator.validate(animes, 0);
+            if (!errors.isEmpty()) {
+                return Mono.error(new BatchValidationException(errors));
+            }
+            Map<Integer, Anime> distinct = new LinkedHashMap<>();
+            animes.forEach(anime -> distinct.put(anime.getId(), anime));
+            return animeRepository.updateNamesById(new ArrayList<>(distinct.values()))
+                    .collect(Collectors.toSet())
+                    .as(transactionalOperator::transactional)
+                    .doOnNext(updated -> updated.forEach(animeCache::invalidate))
+                    .flatMap(updated -> animeChangeFeed.publish(distinct.values().stream()
+                                    .filter(anime -> updated.contains(anime.getId()))
+                                    .map(AnimeChange::updated)
+                                    .collect(Collectors.toList()))
+                            .thenReturn(bulkResult(distinct.keySet(), updated)));
+        });
+    }
+
+    /**
+     * Deletes the animes with a single statement and transaction instead of one delete per
+     * anime, reporting the ids that do not exist. The animes deleted are evicted from the cache
+     * once the transaction commits, as a lookup racing the statement could cache them again.
+     */
+    public Mono<AnimeBulkResult> deleteAll(List<Integer> ids) {
+        return Mono.defer(() -> {
+            if (ids.isEmpty() || ids.stream().anyMatch(Objects::isNull)) {
+                return Mono.error(new StacklessResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid ids"));
+            }
+            Set<Integer> distinct = new LinkedHashSet<>(ids);
+            return animeRepository.removeAllById(new ArrayList<>(distinct))
+                    .collect(Collectors.toSet())
+                    .as(transactionalOperator::transactional)
+                    .doOnNext(deleted -> deleted.forEach(animeCache::invalidate))
+                    .flatMap(deleted -> animeChangeFeed.publish(distinct.stream()
+                                    .filter(deleted::contains)
+                                    .map(AnimeChange::deleted)
+                                    .collect(Collectors.toList()))
+                            .thenReturn(bulkResult(distinct, deleted)));
+        });
+    }
+
+    private static AnimeBulkResult bulkResult(Set<Integer> requested, Set<Integer> affected) {
+        return new AnimeBulkResult(affected.size(), requested.stream()
+                .filter(id -> !affected.contains(id))
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Saves the animes as they arrive, grouped in chunks closed by size or by time, each
+     * chunk committed in its own transaction and reported as soon as it is committed.
+     * Chunks with invalid rows, or rows carrying an id, are reported with their errors and
+     * skipped.
+     */
+    public Flux<AnimeChunkResult> saveStream(Flux<Anime> animes) {
+        AnimeProperties.Batch batch = animeProperties.getBatch();
+        // with fair backpressure the windows, closed by time included, are only opened as they
+        // are requested, unlike bufferTimeout whose timer emits chunks nobody asked for yet and
+        // overflows while a slow chunk commits
+        return animes.index()
+                .windowTimeout(batch.getChunkSize(), batch.getWindowTimeout(), true)
+                .concatMap(Flux::collectList)
+                .filter(rows -> !rows.isEmpty())
+                .index()
+                .concatMap(chunk -> saveChunk(chunk.getT1(), chunk.getT2()));
     }
 
-    private void throwResponseStatusExceptionWhenEmptyName(Anime anime){
-        if(StringUtil.isNullOrEmpty(anime.getName())){
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid Name");
+    private Mono<AnimeChunkResult> saveChunk(long index, List<Tuple2<Long, Anime>> rows) {
+        List<Anime> chunk = rows.stream().map(Tuple2::getT2).collect(Collectors.toList());
+        List<AnimeRowError> errors = animeValidator.validateNew(chunk, rows.get(0).getT1());
+        if (!errors.isEmpty()) {
+            return Mono.just(new AnimeChunkResult(index, 0, List.of(), errors));
         }
+        return animeRepository.insertAll(chunk, chunk.size())
+                .collectList()
+                .as(transactionalOperator::transactional)
+                .flatMap(inserted -> {
+                    List<Integer> ids = inserted.stream().map(Anime::getId).collect(Collectors.toList());
+                    return animeChangeFeed.publish(inserted.stream().map(AnimeChange::created).collect(Collectors.toList()))
+                            .thenReturn(new AnimeChunkResult(index, ids.size(), ids, List.of()));
+                });
     }
 
+    /**
+     * Updates the anime with a single statement, the affected row count telling whether it exists.
+     */
     public Mono<Void> update(Anime anime){
-        return findById(anime.getId())
-                .flatMap(validAnime -> animeRepository.save(anime))
-                .then();
+        return animeRepository.updateNameById(anime.getId(), anime.getName())
+                .filter(updated -> updated > 0)
+                .switchIfEmpty(Mono.error(AnimeNotFoundException::new))
+                .doOnNext(updated -> animeCache.put(anime))
+                .flatMap(updated -> animeChangeFeed.publish(List.of(AnimeChange.updated(anime))));
     }
 
+    /**
+     * Deletes the anime with a single statement, the affected row count telling whether it existed.
+     */
     public Mono<Void> delete(int id){
-        return findById(id)
-                .flatMap(animeRepository::delete)
-                .then();
+        return animeRepository.removeById(id)
+                .filter(deleted -> deleted > 0)
+                .switchIfEmpty(Mono.error(AnimeNotFoundException::new))
+                .doOnNext(deleted -> animeCache.invalidate(id))
+                .flatMap(deleted -> animeChangeFeed.publish(List.of(AnimeChange.deleted(id))));
     }
 
 }
@@ -0,0 +1,82 @@
+package br.com.pehenmo.springwebfluxessentials.service;
+
+import br.com.pehenmo.springwebfluxessentials.entity.Anime;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Shares one load between the concurrent lookups of the same id, whether or not the cache is
+ * enabled: the first lookup subscribes to the load, the others wait for its result, and the id
+ * is released as soon as the load completes so that later lookups start a new one. Ids are
+ * claimed with {@code putIfAbsent} and released with {@code remove}, there is no lock of its own.
+ * <p>
+ * Publishes the {@code anime.lookups} counter, tagged {@code loaded} or {@code collapsed}, and
+ * the {@code anime.lookups.in.flight} gauge.
+ */
+@Component
+public class AnimeSingleFlight implements MeterBinder {
+
+    private final Map<Integer, CompletableFuture<Anime>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder loaded = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+
+    public Mono<Anime> get(Integer id, Function<Integer, Mono<Anime>> loader) {
+        // as in AnimeCache, every subscriber gets its own future so that cancelling one
+        // does not cancel the load shared with the others
+        return Mono.fromFuture(() -> join(id, loader).thenApply(Function.identity()));
+    }
+
+    private CompletableFuture<Anime> join(Integer id, Function<Integer, Mono<Anime>> loader) {
+        CompletableFuture<Anime> pending = new CompletableFuture<>();
+        CompletableFuture<Anime> shared = inFlight.putIfAbsent(id, pending);
+        if (shared != null) {
+            collapsed.increment();
+            return shared;
+        }
+        loaded.increment();
+        // released before completing, as the subscribers may look the id up again right away
+        loader.apply(id).subscribe(
+                anime -> release(id, pending).complete(anime),
+                error -> release(id, pending).completeExceptionally(error),
+                () -> release(id, pending).complete(null));
+        return pending;
+    }
+
+    private CompletableFuture<Anime> release(Integer id, CompletableFuture<Anime> pending) {
+        inFlight.remove(id, pending);
+        return pending;
+    }
+
+    public long loaded() {
+        return loaded.sum();
+    }
+
+    public long collapsed() {
+        return collapsed.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("anime.lookups", loaded, LongAdder::sum)
+                .tag("result", "loaded")
+                .description("Lookups by id that started a load")
+                .register(registry);
+        FunctionCounter.builder("anime.lookups", collapsed, LongAdder::sum)
+                .tag("result", "collapsed")
+                .description("Lookups by id that joined a load already in flight")
+                .register(registry);
+        Gauge.builder("anime.lookups.in.flight", inFlight, Map::size)
+                .description("Ids being loaded")
+                .register(registry);
+    }
+}
@@ -0,0 +1,74 @@
+package br.com.pehenmo.springwebfluxessentials.service;
+
+import br.com.pehenmo.springwebfluxessentials.dto.AnimeRowError;
+import br.com.pehenmo.springwebfluxessentials.entity.Anime;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Checks batches of animes against the {@link Anime} bean constraints before they are
+ * written, so an invalid row is reported without issuing any SQL.
+ */
+@Component
+@RequiredArgsConstructor
+public class AnimeValidator {
+
+    private final Validator validator;
+
+    /**
+     * Returns the violations of every row, numbering the rows from {@code firstRow}.
+     */
+    public List<AnimeRowError> validate(List<Anime> animes, long firstRow) {
+        return validate(animes, firstRow, IdRule.ANY);
+    }
+
+    /**
+     * Like {@link #validate}, also rejecting the rows that carry an id, for batches that only
+     * insert new animes and would otherwise drop the id.
+     */
+    public List<AnimeRowError> validateNew(List<Anime> animes, long firstRow) {
+        return validate(animes, firstRow, IdRule.ABSENT);
+    }
+
+    /**
+     * Like {@link #validate}, also rejecting the rows without an id, for batches keyed by id
+     * that must write the same rows however often they are replayed.
+     */
+    public List<AnimeRowError> validateKeyed(List<Anime> animes, long firstRow) {
+        return validate(animes, firstRow, IdRule.PRESENT);
+    }
+
+    private List<AnimeRowError> validate(List<Anime> animes, long firstRow, IdRule idRule) {
+        List<AnimeRowError> errors = Collections.emptyList();
+        for (int i = 0; i < animes.size(); i++) {
+            Anime anime = animes.get(i);
+            if (idRule == IdRule.ABSENT && anime.getId() != null) {
+                errors = add(errors, new AnimeRowError(firstRow + i, "id", "must be null"));
+            } else if (idRule == IdRule.PRESENT && anime.getId() == null) {
+                errors = add(errors, new AnimeRowError(firstRow + i, "id", "must not be null"));
+            }
+            for (ConstraintViolation<Anime> violation : validator.validate(anime)) {
+                errors = add(errors, new AnimeRowError(firstRow + i, violation.getPropertyPath().toString(), violation.getMessage()));
+            }
+        }
+        return errors;
+    }
+
+    private static List<AnimeRowError> add(List<AnimeRowError> errors, AnimeRowError error) {
+        if (errors.isEmpty()) {
+            errors = new ArrayList<>();
+        }
+        errors.add(error);
+        return errors;
+    }
+
+    private enum IdRule {
+        ANY, ABSENT, PRESENT
+    }
+}
@@ -0,0 +1,119 @@
+package br.com.pehenmo.springwebfluxessentials.service;
+
+import br.com.pehenmo.springwebfluxessentials.config.AnimeProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.stream.Collectors;
+
+/**
+ * Issues and verifies short-lived signed tokens of the form {@code payload.signature}, where
+ * the payload carries the username, the authorities and the expiration. Verifying a token
+ * only needs the HMAC key, so the hot path does not look the user up again.
+ */
+@Slf4j
+@Service
+public class TokenService {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final char SEPARATOR = '\n';
+
+    private final SecretKeySpec key;
+    private final Duration ttl;
+    private final ThreadLocal<Mac> mac = ThreadLocal.withInitial(this::newMac);
+
+    public TokenService(AnimeProperties animeProperties) {
+        AnimeProperties.Token properties = animeProperties.getSecurity().getToken();
+        this.key = new SecretKeySpec(secret(properties.getSecret()), HMAC_ALGORITHM);
+        this.ttl = properties.getTtl();
+    }
+
+    public String issue(Authentication authentication) {
+        String payload = authentication.getName() + SEPARATOR
+                + authentication.getAuthorities().stream()
+                    .map(GrantedAuthority::getAuthority)
+                    .collect(Collectors.joining(",")) + SEPARATOR
+                + Instant.now().plus(ttl).getEpochSecond();
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(payloadBytes) + "." + encoder.encodeToString(sign(payloadBytes));
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Returns the authentication carried by the token, or throws {@link BadCredentialsException}
+     * when the token is malformed, was not signed with our key or is expired.
+     */
+    public Authentication verify(String token) {
+        int dot = token.indexOf('.');
+        if (dot < 0) {
+            throw new BadCredentialsException("Invalid token");
+        }
+        byte[] payloadBytes;
+        byte[] signature;
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            payloadBytes = decoder.decode(token.substring(0, dot));
+            signature = decoder.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            throw new BadCredentialsException("Invalid token");
+        }
+        if (!MessageDigest.isEqual(sign(payloadBytes), signature)) {
+            throw new BadCredentialsException("Invalid token");
+        }
+
+        String payload = new String(payloadBytes, StandardCharsets.UTF_8);
+        int first = payload.indexOf(SEPARATOR);
+        int last = payload.lastIndexOf(SEPARATOR);
+        if (first < 0 || first == last) {
+            throw new BadCredentialsException("Invalid token");
+        }
+        if (Long.parseLong(payload.substring(last + 1)) < Instant.now().getEpochSecond()) {
+            throw new BadCredentialsException("Expired token");
+        }
+        return new UsernamePasswordAuthenticationToken(payload.substring(0, first), null,
+                AuthorityUtils.commaSeparatedStringToAuthorityList(payload.substring(first + 1, last)));
+    }
+
+    private byte[] sign(byte[] payload) {
+        return mac.get().doFinal(payload);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac hmac = Mac.getInstance(HMAC_ALGORITHM);
+            hmac.init(key);
+            return hmac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not create " + HMAC_ALGORITHM, e);
+        }
+    }
+
+    private static byte[] secret(String configured) {
+        if (StringUtils.hasText(configured)) {
+            return Base64.getDecoder().decode(configured);
+        }
+        log.warn("anime.security.token.secret is not set, tokens will only be valid for this instance until it restarts");
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        return secret;
+    }
+}
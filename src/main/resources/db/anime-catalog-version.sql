@@ -0,0 +1,31 @@
+-- Version of the anime catalog answering the ETag of GET /animes without reading the
+-- animes. Every statement writing to anime bumps it in its own transaction, so the new
+-- version becomes visible together with the change.
+--
+-- The version is a single row, so every transaction writing to anime holds its lock until
+-- it commits: writers are serialized, bulk ones included (saveStream chunks, upsert, bulk
+-- update and delete), and a long ingest delays every other write until it ends.
+--
+-- Applied at startup through spring.sql.init as a single statement, as the function body
+-- holds semicolons, so it must stay idempotent. The anime table must exist beforehand.
+CREATE TABLE IF NOT EXISTS anime_catalog_version (
+    id BOOLEAN PRIMARY KEY DEFAULT TRUE CHECK (id),
+    version BIGINT NOT NULL
+);
+
+-- starts from the clock, so a recreated table does not hand out versions seen before
+INSERT INTO anime_catalog_version (id, version)
+VALUES (TRUE, (EXTRACT(EPOCH FROM clock_timestamp()) * 1000)::BIGINT)
+ON CONFLICT (id) DO NOTHING;
+
+CREATE OR REPLACE FUNCTION bump_anime_catalog_version() RETURNS trigger AS $$
+BEGIN
+    UPDATE anime_catalog_version SET version = version + 1;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS anime_catalog_version_bump ON anime;
+CREATE TRIGGER anime_catalog_version_bump
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON anime
+    FOR EACH STATEMENT EXECUTE FUNCTION bump_anime_catalog_version();
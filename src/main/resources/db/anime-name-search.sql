@@ -0,0 +1,5 @@
+-- Trigram index serving the substring and prefix matching of GET /animes/search,
+-- which filters with name ILIKE '%query%'. Run once per database.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS anime_name_trgm_idx ON anime USING gin (name gin_trgm_ops);
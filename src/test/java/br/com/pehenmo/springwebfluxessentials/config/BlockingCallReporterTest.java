@@ -0,0 +1,42 @@
+package br.com.pehenmo.springwebfluxessentials.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.blockhound.BlockingMethod;
+
+import java.lang.reflect.Modifier;
+
+class BlockingCallReporterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final BlockingCallReporter reporter = new BlockingCallReporter(meterRegistry);
+
+    @Test
+    @DisplayName("accept counts the blocking calls by method and call site without failing them")
+    public void accept_CountBlockingCalls_WhenReporting(){
+        BlockingMethod sleep = new BlockingMethod("java.lang.Thread", "sleep", Modifier.STATIC);
+
+        reporter.accept(sleep);
+        reporter.accept(sleep);
+
+        Assertions.assertEquals(2, meterRegistry.get(BlockingCallReporter.METRIC_NAME)
+                .tag("method", "java.lang.Thread.sleep")
+                .tag("site", BlockingCallReporterTest.class.getName() + ".accept_CountBlockingCalls_WhenReporting")
+                .counter().count());
+    }
+
+    @Test
+    @DisplayName("callSite falls back to the innermost library frame when the application is not on the stack")
+    public void callSite_ReturnLibraryFrame_WhenApplicationIsNotOnTheStack(){
+        StackTraceElement[] stack = {
+                new StackTraceElement("java.lang.Thread", "sleep", null, -1),
+                new StackTraceElement("reactor.core.scheduler.WorkerTask", "call", null, -1),
+                new StackTraceElement("java.util.concurrent.FutureTask", "run", null, -1)
+        };
+
+        Assertions.assertEquals("reactor.core.scheduler.WorkerTask.call", BlockingCallReporter.callSite(stack));
+    }
+}
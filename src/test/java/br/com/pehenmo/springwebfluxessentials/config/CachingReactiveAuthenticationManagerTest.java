@@ -0,0 +1,86 @@
+package br.com.pehenmo.springwebfluxessentials.config;
+
+import br.com.pehenmo.springwebfluxessentials.entity.UserSystem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.BDDMockito;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(SpringExtension.class)
+class CachingReactiveAuthenticationManagerTest {
+
+    @Mock
+    private ReactiveAuthenticationManager delegate;
+
+    private CachingReactiveAuthenticationManager authenticationManager;
+
+    private final UserSystem userSystem = new UserSystem(1, "Mario", "mario", "{bcrypt}hash", "ROLE_USER");
+
+    private final UsernamePasswordAuthenticationToken authenticated =
+            new UsernamePasswordAuthenticationToken(userSystem, userSystem.getPassword(), userSystem.getAuthorities());
+
+    @BeforeEach
+    public void setUp(){
+        authenticationManager = new CachingReactiveAuthenticationManager(delegate, new AnimeProperties.CredentialCache());
+
+        BDDMockito.when(delegate.authenticate(ArgumentMatchers.any())).
+                thenReturn(Mono.just(authenticated));
+    }
+
+    @Test
+    @DisplayName("authenticate verifies the same credentials only once")
+    public void authenticate_CallDelegateOnce_WhenSameCredentials(){
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(authenticationManager.authenticate(credentials("mario", "secret")))
+                    .expectNext(authenticated)
+                    .verifyComplete();
+        }
+
+        BDDMockito.verify(delegate, Mockito.times(1)).authenticate(ArgumentMatchers.any());
+    }
+
+    @Test
+    @DisplayName("authenticate verifies again when the password is different")
+    public void authenticate_CallDelegate_WhenPasswordIsDifferent(){
+        BDDMockito.when(delegate.authenticate(credentials("mario", "wrong"))).
+                thenReturn(Mono.error(new BadCredentialsException("Invalid Credentials")));
+
+        StepVerifier.create(authenticationManager.authenticate(credentials("mario", "secret")))
+                .expectNext(authenticated)
+                .verifyComplete();
+
+        StepVerifier.create(authenticationManager.authenticate(credentials("mario", "wrong")))
+                .expectError(BadCredentialsException.class)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("evict drops the cached credentials of a changed user")
+    public void evict_CallDelegateAgain_WhenUserChanged(){
+        StepVerifier.create(authenticationManager.authenticate(credentials("mario", "secret")))
+                .expectNext(authenticated)
+                .verifyComplete();
+
+        authenticationManager.evict(new UserSystem(1, "Mario", "mario2", "{bcrypt}other", "ROLE_USER"));
+
+        StepVerifier.create(authenticationManager.authenticate(credentials("mario", "secret")))
+                .expectNext(authenticated)
+                .verifyComplete();
+
+        BDDMockito.verify(delegate, Mockito.times(2)).authenticate(ArgumentMatchers.any());
+    }
+
+    private static UsernamePasswordAuthenticationToken credentials(String username, String password) {
+        return new UsernamePasswordAuthenticationToken(username, password);
+    }
+}
@@ -0,0 +1,87 @@
+package br.com.pehenmo.springwebfluxessentials.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+class InFlightRequestsWebFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final InFlightRequestsWebFilter filter = new InFlightRequestsWebFilter(meterRegistry, List.of("/animes", "/animes/{id}"));
+
+    @Test
+    @DisplayName("filter counts the request in flight under its route until it completes")
+    public void filter_CountInFlightByRoute_UntilRequestCompletes(){
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/animes/1"));
+        Sinks.Empty<Void> response = Sinks.empty();
+
+        StepVerifier.create(filter.filter(exchange, ex -> {
+                    Assertions.assertEquals(1, inFlight(InFlightRequestsWebFilter.UNKNOWN));
+                    match(ex, "/animes/{id}");
+                    return response.asMono();
+                }))
+                .then(() -> {
+                    Assertions.assertEquals(1, inFlight("/animes/{id}"));
+                    Assertions.assertEquals(0, inFlight("/animes"));
+                    Assertions.assertEquals(0, inFlight(InFlightRequestsWebFilter.UNKNOWN));
+                    response.tryEmitEmpty();
+                })
+                .verifyComplete();
+
+        Assertions.assertEquals(0, inFlight("/animes/{id}"));
+    }
+
+    @Test
+    @DisplayName("filter stops counting the request when it fails")
+    public void filter_StopCounting_WhenRequestFails(){
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/animes"));
+
+        StepVerifier.create(filter.filter(exchange, ex -> {
+                    match(ex, "/animes");
+                    return Mono.error(new IllegalStateException());
+                }))
+                .verifyError(IllegalStateException.class);
+
+        Assertions.assertEquals(0, inFlight("/animes"));
+    }
+
+    @Test
+    @DisplayName("filter publishes a gauge for a route without one once one of its requests completes")
+    public void filter_RegisterRoute_WhenRequestOfUnknownRouteCompletes(){
+        MockServerWebExchange first = MockServerWebExchange.from(MockServerHttpRequest.get("/actuator/health"));
+        MockServerWebExchange second = MockServerWebExchange.from(MockServerHttpRequest.get("/actuator/health"));
+        Sinks.Empty<Void> response = Sinks.empty();
+
+        StepVerifier.create(filter.filter(first, ex -> match(ex, "/actuator/health")))
+                .verifyComplete();
+
+        StepVerifier.create(filter.filter(second, ex -> match(ex, "/actuator/health").then(response.asMono())))
+                .then(() -> {
+                    Assertions.assertEquals(1, inFlight("/actuator/health"));
+                    Assertions.assertEquals(0, inFlight(InFlightRequestsWebFilter.UNKNOWN));
+                    response.tryEmitEmpty();
+                })
+                .verifyComplete();
+    }
+
+    private static Mono<Void> match(ServerWebExchange exchange, String route) {
+        exchange.getAttributes().put(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, PathPatternParser.defaultInstance.parse(route));
+        return Mono.empty();
+    }
+
+    private double inFlight(String route) {
+        return meterRegistry.get(InFlightRequestsWebFilter.METRIC_NAME).tag("uri", route).gauge().value();
+    }
+}
@@ -0,0 +1,139 @@
+package br.com.pehenmo.springwebfluxessentials.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Map;
+
+class RateLimitWebFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final RateLimitWebFilter filter = new RateLimitWebFilter(properties(), meterRegistry);
+
+    @Test
+    @DisplayName("filter answers 429 with Retry-After once the user's bucket is empty")
+    public void filter_ReturnTooManyRequests_WhenBucketIsEmpty(){
+        Authentication user = authentication("mario", "ROLE_USER");
+        Assertions.assertNull(filter(user, "/animes").getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        Assertions.assertNull(filter(user, "/animes/1").getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/animes"));
+        StepVerifier.create(filter.filter(exchange, ex -> Mono.empty())
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(user)))
+                .expectErrorMatches(error -> error instanceof ResponseStatusException
+                        && ((ResponseStatusException) error).getStatus() == HttpStatus.TOO_MANY_REQUESTS)
+                .verify();
+
+        Assertions.assertEquals("1000", exchange.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        Assertions.assertEquals(2, requests("default", "allowed"));
+        Assertions.assertEquals(1, requests("default", "rejected"));
+    }
+
+    @Test
+    @DisplayName("filter keeps a bucket per user")
+    public void filter_KeepBucketPerUser(){
+        filter(authentication("mario", "ROLE_USER"), "/animes");
+        filter(authentication("mario", "ROLE_USER"), "/animes");
+        filter(authentication("luigi", "ROLE_USER"), "/animes");
+
+        Assertions.assertEquals(3, requests("default", "allowed"));
+    }
+
+    @Test
+    @DisplayName("filter applies the limit of the first matching route")
+    public void filter_ApplyRouteLimit_WhenRouteMatches(){
+        Authentication admin = authentication("pehenmo", "ROLE_ADMIN");
+        filter(admin, "/animes/batch");
+        filter(admin, "/animes/batch");
+
+        Assertions.assertEquals(1, requests("batch", "allowed"));
+        Assertions.assertEquals(1, requests("batch", "rejected"));
+    }
+
+    @Test
+    @DisplayName("filter gives a user with several roles the most generous limit")
+    public void filter_ApplyMostGenerousLimit_WhenUserHasSeveralRoles(){
+        Authentication admin = authentication("pehenmo", "ROLE_USER", "ROLE_ADMIN");
+        for (int i = 0; i < 5; i++) {
+            filter(admin, "/animes");
+        }
+
+        Assertions.assertEquals(5, requests("default", "allowed"));
+    }
+
+    @Test
+    @DisplayName("filter does not limit anonymous requests nor users without a limited role")
+    public void filter_DoNotLimit_WhenNoLimitApplies(){
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/swagger-ui.html"));
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(filter.filter(exchange, ex -> Mono.empty())).verifyComplete();
+            filter(authentication("guest", "ROLE_GUEST"), "/animes");
+        }
+
+        Assertions.assertEquals(0, requests("default", "allowed"));
+        Assertions.assertEquals(0, requests("default", "rejected"));
+    }
+
+    @Test
+    @DisplayName("RateLimitWebFilter fails at startup when a limit has no rate or no capacity")
+    public void rateLimitWebFilter_ThrowIllegalArgumentException_WhenLimitIsInvalid(){
+        AnimeProperties noRate = properties();
+        noRate.getRateLimit().setRoles(Map.of("USER", limit(2, 0)));
+        AnimeProperties noCapacity = properties();
+        noCapacity.getRateLimit().getRoutes().get(0).setRoles(Map.of("ADMIN", limit(0, 1)));
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new RateLimitWebFilter(noRate, meterRegistry));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new RateLimitWebFilter(noCapacity, meterRegistry));
+    }
+
+    private MockServerWebExchange filter(Authentication authentication, String path) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get(path));
+        filter.filter(exchange, ex -> Mono.empty())
+                .contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication))
+                .onErrorResume(error -> Mono.empty())
+                .block();
+        return exchange;
+    }
+
+    private double requests(String route, String outcome) {
+        return meterRegistry.get("anime.rate.limit.requests").tag("route", route).tag("outcome", outcome).counter().count();
+    }
+
+    private static Authentication authentication(String name, String... roles) {
+        return new UsernamePasswordAuthenticationToken(name, null, AuthorityUtils.createAuthorityList(roles));
+    }
+
+    private static AnimeProperties properties() {
+        AnimeProperties animeProperties = new AnimeProperties();
+        AnimeProperties.RateLimit rateLimit = animeProperties.getRateLimit();
+        rateLimit.setRoles(Map.of("USER", limit(2, 0.001), "ADMIN", limit(10, 0.001)));
+        AnimeProperties.RouteLimit batch = new AnimeProperties.RouteLimit();
+        batch.setName("batch");
+        batch.setPattern("/animes/batch/**");
+        batch.setRoles(Map.of("ADMIN", limit(1, 0.001)));
+        rateLimit.setRoutes(List.of(batch));
+        return animeProperties;
+    }
+
+    private static AnimeProperties.Limit limit(int capacity, double requestsPerSecond) {
+        AnimeProperties.Limit limit = new AnimeProperties.Limit();
+        limit.setCapacity(capacity);
+        limit.setRequestsPerSecond(requestsPerSecond);
+        return limit;
+    }
+}
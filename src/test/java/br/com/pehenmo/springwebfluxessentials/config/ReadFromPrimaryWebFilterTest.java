@@ -0,0 +1,115 @@
+package br.com.pehenmo.springwebfluxessentials.config;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpCookie;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseCookie;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class ReadFromPrimaryWebFilterTest {
+
+    private final AtomicBoolean primaryRequired = new AtomicBoolean();
+
+    private final ReadFromPrimaryWebFilter filter = new ReadFromPrimaryWebFilter(replicas(List.of("r2dbc:h2:mem:///replica")));
+
+    @Test
+    @DisplayName("filter requires the primary when the request asks for it")
+    public void filter_RequirePrimary_WhenHeaderPresent(){
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/animes/1")
+                .header(ReadFromPrimaryWebFilter.HEADER_NAME, "true"));
+
+        StepVerifier.create(filter.filter(exchange, ex -> recordPrimaryRequired()))
+                .verifyComplete();
+
+        Assertions.assertTrue(primaryRequired.get());
+    }
+
+    @Test
+    @DisplayName("filter requires the primary while the client has written recently")
+    public void filter_RequirePrimary_WhenCookiePresent(){
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/animes/1")
+                .cookie(new HttpCookie(ReadFromPrimaryWebFilter.COOKIE_NAME, "true")));
+
+        StepVerifier.create(filter.filter(exchange, ex -> recordPrimaryRequired()))
+                .verifyComplete();
+
+        Assertions.assertTrue(primaryRequired.get());
+    }
+
+    @Test
+    @DisplayName("filter lets reads go to the replicas when the request does not ask for the primary")
+    public void filter_DoNotRequirePrimary_WhenNotAsked(){
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/animes/1"));
+
+        StepVerifier.create(filter.filter(exchange, ex -> recordPrimaryRequired()))
+                .verifyComplete();
+
+        Assertions.assertFalse(primaryRequired.get());
+    }
+
+    @Test
+    @DisplayName("filter sets the read from primary cookie on the response of a successful write")
+    public void filter_SetCookie_WhenWriteSuccessful(){
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/animes"));
+
+        StepVerifier.create(filter.filter(exchange, ex -> {
+                    ex.getResponse().setStatusCode(HttpStatus.CREATED);
+                    return ex.getResponse().setComplete();
+                }))
+                .verifyComplete();
+
+        ResponseCookie cookie = exchange.getResponse().getCookies().getFirst(ReadFromPrimaryWebFilter.COOKIE_NAME);
+        Assertions.assertNotNull(cookie);
+        Assertions.assertEquals(Duration.ofSeconds(5), cookie.getMaxAge());
+    }
+
+    @Test
+    @DisplayName("filter does not set the read from primary cookie when the write fails")
+    public void filter_DoNotSetCookie_WhenWriteFails(){
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/animes"));
+
+        StepVerifier.create(filter.filter(exchange, ex -> {
+                    ex.getResponse().setStatusCode(HttpStatus.BAD_REQUEST);
+                    return ex.getResponse().setComplete();
+                }))
+                .verifyComplete();
+
+        Assertions.assertFalse(exchange.getResponse().getCookies().containsKey(ReadFromPrimaryWebFilter.COOKIE_NAME));
+    }
+
+    @Test
+    @DisplayName("filter does nothing when there are no replicas")
+    public void filter_DoNothing_WhenNoReplicas(){
+        ReadFromPrimaryWebFilter disabled = new ReadFromPrimaryWebFilter(replicas(List.of()));
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/animes")
+                .header(ReadFromPrimaryWebFilter.HEADER_NAME, "true"));
+
+        StepVerifier.create(disabled.filter(exchange, ex -> ex.getResponse().setComplete().then(recordPrimaryRequired())))
+                .verifyComplete();
+
+        Assertions.assertFalse(primaryRequired.get());
+        Assertions.assertTrue(exchange.getResponse().getCookies().isEmpty());
+    }
+
+    private Mono<Void> recordPrimaryRequired() {
+        return Mono.deferContextual(context -> {
+            primaryRequired.set(ReadReplicas.isPrimaryRequired(context));
+            return Mono.empty();
+        });
+    }
+
+    private static AnimeProperties.Replicas replicas(List<String> urls) {
+        AnimeProperties.Replicas replicas = new AnimeProperties.Replicas();
+        replicas.setUrls(urls);
+        return replicas;
+    }
+}
@@ -0,0 +1,131 @@
+package br.com.pehenmo.springwebfluxessentials.config;
+
+import io.r2dbc.h2.CloseableConnectionFactory;
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+class ReadReplicaRoutingConnectionFactoryTest {
+
+    private final CloseableConnectionFactory primary = H2ConnectionFactory.inMemory("routing-primary");
+    private final CloseableConnectionFactory replica = H2ConnectionFactory.inMemory("routing-replica");
+
+    private final DatabaseClient databaseClient = DatabaseClient.create(new ReadReplicaRoutingConnectionFactory(
+            primary, List.of(replica), AnimeProperties.Balancing.ROUND_ROBIN));
+
+    @BeforeEach
+    public void setUp(){
+        createDatabase(primary, "Primary");
+        createDatabase(replica, "Replica");
+    }
+
+    @AfterEach
+    public void tearDown(){
+        primary.close();
+        replica.close();
+    }
+
+    @Test
+    @DisplayName("create connects to the replica when the query is a read")
+    public void create_ConnectToReplica_WhenRead(){
+        StepVerifier.create(name().contextWrite(ReadReplicas::preferReplica))
+                .expectNext("Replica")
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("create connects to the primary when the query is not a read")
+    public void create_ConnectToPrimary_WhenNotRead(){
+        StepVerifier.create(name())
+                .expectNext("Primary")
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("create connects to the primary when the request requires it")
+    public void create_ConnectToPrimary_WhenPrimaryRequired(){
+        StepVerifier.create(name()
+                        .contextWrite(ReadReplicas::preferReplica)
+                        .contextWrite(ReadReplicas::requirePrimary))
+                .expectNext("Primary")
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("create takes the replicas in turn when balancing round robin")
+    public void create_TakeReplicasInTurn_WhenRoundRobin(){
+        ConnectionFactory first = replica();
+        ConnectionFactory second = replica();
+        ReadReplicaRoutingConnectionFactory connectionFactory = new ReadReplicaRoutingConnectionFactory(
+                primary, List.of(first, second), AnimeProperties.Balancing.ROUND_ROBIN);
+
+        for (int i = 0; i < 4; i++) {
+            StepVerifier.create(Mono.from(connectionFactory.create()).contextWrite(ReadReplicas::preferReplica))
+                    .expectNextCount(1)
+                    .verifyComplete();
+        }
+
+        Mockito.verify(first, Mockito.times(2)).create();
+        Mockito.verify(second, Mockito.times(2)).create();
+    }
+
+    @Test
+    @DisplayName("create skips the replica with callers waiting when balancing least pending")
+    public void create_SkipPendingReplica_WhenLeastPending(){
+        ConnectionFactory saturated = Mockito.mock(ConnectionFactory.class);
+        BDDMockito.doReturn(Mono.never()).when(saturated).create();
+        ConnectionFactory idle = replica();
+        ReadReplicaRoutingConnectionFactory connectionFactory = new ReadReplicaRoutingConnectionFactory(
+                primary, List.of(saturated, idle), AnimeProperties.Balancing.LEAST_PENDING);
+
+        Mono.from(connectionFactory.create()).contextWrite(ReadReplicas::preferReplica).subscribe();
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(Mono.from(connectionFactory.create()).contextWrite(ReadReplicas::preferReplica))
+                    .expectNextCount(1)
+                    .verifyComplete();
+        }
+
+        Mockito.verify(saturated, Mockito.times(1)).create();
+        Mockito.verify(idle, Mockito.times(3)).create();
+    }
+
+    @Test
+    @DisplayName("unwrap returns the primary connection factory")
+    public void unwrap_ReturnPrimary(){
+        ReadReplicaRoutingConnectionFactory connectionFactory = new ReadReplicaRoutingConnectionFactory(
+                primary, List.of(replica), AnimeProperties.Balancing.ROUND_ROBIN);
+
+        Assertions.assertSame(primary, connectionFactory.unwrap());
+    }
+
+    private Mono<String> name() {
+        return databaseClient.sql("SELECT name FROM anime")
+                .map(row -> row.get("name", String.class))
+                .one();
+    }
+
+    private static ConnectionFactory replica() {
+        ConnectionFactory replica = Mockito.mock(ConnectionFactory.class);
+        BDDMockito.doReturn(Mono.just(Mockito.mock(Connection.class))).when(replica).create();
+        return replica;
+    }
+
+    private static void createDatabase(ConnectionFactory connectionFactory, String name) {
+        DatabaseClient client = DatabaseClient.create(connectionFactory);
+        client.sql("CREATE TABLE IF NOT EXISTS anime (id INT PRIMARY KEY, name VARCHAR(255))").then()
+                .then(client.sql("MERGE INTO anime KEY (id) VALUES (1, :name)").bind("name", name).then())
+                .block();
+    }
+}
@@ -0,0 +1,53 @@
+package br.com.pehenmo.springwebfluxessentials.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class TimedConnectionFactoryTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final ConnectionFactory delegate = Mockito.mock(ConnectionFactory.class);
+
+    private final TimedConnectionFactory connectionFactory = new TimedConnectionFactory(delegate, "connectionFactory", meterRegistry);
+
+    @Test
+    @DisplayName("create records the acquire latency of successful acquisitions")
+    public void create_RecordAcquireLatency_WhenSuccessful(){
+        Connection connection = Mockito.mock(Connection.class);
+        BDDMockito.doReturn(Mono.just(connection)).when(delegate).create();
+
+        StepVerifier.create(Mono.<Connection>from(connectionFactory.create()))
+                .expectNext(connection)
+                .verifyComplete();
+
+        Assertions.assertEquals(1, meterRegistry.get("r2dbc.pool.acquire").tag("outcome", "success").timer().count());
+        Assertions.assertEquals(0, meterRegistry.get("r2dbc.pool.acquire").tag("outcome", "failure").timer().count());
+    }
+
+    @Test
+    @DisplayName("create records the acquire latency of failed acquisitions")
+    public void create_RecordAcquireLatency_WhenFailed(){
+        BDDMockito.doReturn(Mono.error(new IllegalStateException("timeout"))).when(delegate).create();
+
+        StepVerifier.create(connectionFactory.create())
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        Assertions.assertEquals(1, meterRegistry.get("r2dbc.pool.acquire").tag("outcome", "failure").timer().count());
+    }
+
+    @Test
+    @DisplayName("unwrap returns the pooled connection factory")
+    public void unwrap_ReturnDelegate(){
+        Assertions.assertSame(delegate, connectionFactory.unwrap());
+    }
+}
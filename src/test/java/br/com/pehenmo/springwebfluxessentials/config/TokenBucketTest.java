@@ -0,0 +1,49 @@
+package br.com.pehenmo.springwebfluxessentials.config;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    @DisplayName("tryTake grants a burst of capacity tokens then tells how long to wait")
+    public void tryTake_GrantBurst_ThenReturnWait(){
+        TokenBucket bucket = new TokenBucket(3, 2, 0);
+
+        Assertions.assertEquals(0, bucket.tryTake(0));
+        Assertions.assertEquals(0, bucket.tryTake(0));
+        Assertions.assertEquals(0, bucket.tryTake(0));
+        Assertions.assertEquals(SECOND / 2, bucket.tryTake(0));
+    }
+
+    @Test
+    @DisplayName("tryTake grants tokens again as the bucket refills, up to its capacity")
+    public void tryTake_GrantTokens_WhenRefilled(){
+        TokenBucket bucket = new TokenBucket(2, 2, 0);
+        bucket.tryTake(0);
+        bucket.tryTake(0);
+
+        Assertions.assertEquals(0, bucket.tryTake(SECOND / 2));
+        Assertions.assertTrue(bucket.tryTake(SECOND / 2) > 0);
+
+        long later = 60 * SECOND;
+        Assertions.assertEquals(0, bucket.tryTake(later));
+        Assertions.assertEquals(0, bucket.tryTake(later));
+        Assertions.assertTrue(bucket.tryTake(later) > 0);
+    }
+
+    @Test
+    @DisplayName("TokenBucket rejects a rate or a capacity it cannot turn into an interval")
+    public void tokenBucket_ThrowIllegalArgumentException_WhenRateOrCapacityIsInvalid(){
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, 0, 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, -1, 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, Double.NaN, 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1, 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new TokenBucket(Integer.MAX_VALUE, 1e-9, 0));
+    }
+}
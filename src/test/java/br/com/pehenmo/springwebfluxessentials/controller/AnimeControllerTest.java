@@ -1,5 +1,10 @@
 package br.com.pehenmo.springwebfluxessentials.controller;
 
+import br.com.pehenmo.springwebfluxessentials.dto.AnimeBulkResult;
+import br.com.pehenmo.springwebfluxessentials.dto.AnimeChange;
+import br.com.pehenmo.springwebfluxessentials.dto.AnimeChunkResult;
+import br.com.pehenmo.springwebfluxessentials.dto.AnimePage;
+import br.com.pehenmo.springwebfluxessentials.dto.AnimeUpsertResult;
 import br.com.pehenmo.springwebfluxessentials.entity.Anime;
 import br.com.pehenmo.springwebfluxessentials.service.AnimeService;
 import br.com.pehenmo.springwebfluxessentials.util.AnimeCreator;
@@ -9,6 +14,11 @@ import org.mockito.ArgumentMatchers;
 import org.mockito.BDDMockito;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import reactor.blockhound.BlockHound;
 import reactor.blockhound.BlockingOperationError;
@@ -40,7 +50,22 @@ class AnimeControllerTest {
 
     @BeforeEach
     public void setUp(){
-        BDDMockito.when(animeService.findAll()).
+        BDDMockito.when(animeService.findPage(null, null)).
+                thenReturn(Mono.just(new AnimePage(List.of(anime), null)).log());
+
+        BDDMockito.when(animeService.findCatalogVersion()).
+                thenReturn(Mono.just("c0ffee"));
+
+        BDDMockito.when(animeService.streamAll()).
+                thenReturn(Flux.just(anime).log());
+
+        BDDMockito.when(animeService.findPage(null, 10)).
+                thenReturn(Mono.just(new AnimePage(List.of(anime), null)).log());
+
+        BDDMockito.when(animeService.search("naruto", null, 10)).
+                thenReturn(Flux.just(anime).log());
+
+        BDDMockito.when(animeService.findAllById(List.of(1, 2))).
                 thenReturn(Flux.just(anime).log());
 
         BDDMockito.when(animeService.findById(ArgumentMatchers.anyInt())).
@@ -77,9 +102,132 @@ class AnimeControllerTest {
     }
 
     @Test
-    @DisplayName("listAll returns a flux of anime")
-    public void listAll_ReturnFluxOfAnime_WhenSuccessful(){
-        StepVerifier.create(animeController.listAll())
+    @DisplayName("listAll returns a page of anime tagged with the catalog version")
+    public void listAll_ReturnPageOfAnime_WhenSuccessful(){
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/animes"));
+
+        StepVerifier.create(animeController.listAll(null, null, exchange))
+                .expectSubscription()
+                .assertNext(response -> {
+                    Assertions.assertEquals("W/\"c0ffee\"", response.getHeaders().getETag());
+                    Assertions.assertNull(response.getHeaders().getFirst(HttpHeaders.LINK));
+                    Assertions.assertEquals(List.of(anime), response.getBody());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("listAll lists the animes without an ETag when the catalog has no version")
+    public void listAll_ReturnPageWithoutETag_WhenCatalogVersionIsMissing(){
+        BDDMockito.when(animeService.findCatalogVersion()).
+                thenReturn(Mono.empty());
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/animes"));
+
+        StepVerifier.create(animeController.listAll(null, null, exchange))
+                .expectSubscription()
+                .assertNext(response -> {
+                    Assertions.assertNull(response.getHeaders().getETag());
+                    Assertions.assertEquals(List.of(anime), response.getBody());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("listAll lists the animes without an ETag when the catalog version cannot be read")
+    public void listAll_ReturnPageWithoutETag_WhenCatalogVersionFails(){
+        BDDMockito.when(animeService.findCatalogVersion()).
+                thenReturn(Mono.error(new IllegalStateException("relation \"anime_catalog_version\" does not exist")));
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/animes"));
+
+        StepVerifier.create(animeController.listAll(null, null, exchange))
+                .expectSubscription()
+                .assertNext(response -> {
+                    Assertions.assertEquals(HttpStatus.OK, response.getStatusCode());
+                    Assertions.assertNull(response.getHeaders().getETag());
+                    Assertions.assertEquals(List.of(anime), response.getBody());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("listAll links to the next page when there are more animes")
+    public void listAll_LinkNextPage_WhenThereAreMoreAnimes(){
+        BDDMockito.when(animeService.findPage(null, 1)).
+                thenReturn(Mono.just(new AnimePage(List.of(anime), 1)));
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/animes?limit=1"));
+
+        StepVerifier.create(animeController.listAll(null, 1, exchange))
+                .expectSubscription()
+                .assertNext(response -> Assertions.assertEquals("</animes?limit=1&after=1>; rel=\"next\"",
+                        response.getHeaders().getFirst(HttpHeaders.LINK)))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("listAll answers Not Modified without listing the animes when the catalog still matches the ETag")
+    public void listAll_ReturnNotModified_WhenETagMatches(){
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/animes").ifNoneMatch("W/\"c0ffee\""));
+
+        StepVerifier.create(animeController.listAll(null, null, exchange))
+                .expectSubscription()
+                .assertNext(response -> Assertions.assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode()))
+                .verifyComplete();
+
+        BDDMockito.verify(animeService, Mockito.never()).findPage(ArgumentMatchers.any(), ArgumentMatchers.any());
+    }
+
+    @Test
+    @DisplayName("changes pushes the changes as server-sent events named after their type")
+    public void changes_ReturnServerSentEvents_WhenSuccessful(){
+        BDDMockito.when(animeService.changes()).
+                thenReturn(Flux.just(AnimeChange.created(anime), AnimeChange.deleted(1)));
+
+        StepVerifier.create(animeController.changes())
+                .expectSubscription()
+                .assertNext(event -> {
+                    Assertions.assertEquals("created", event.event());
+                    Assertions.assertEquals(AnimeChange.created(anime), event.data());
+                })
+                .assertNext(event -> Assertions.assertEquals("deleted", event.event()))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("streamAll returns a flux of anime")
+    public void streamAll_ReturnFluxOfAnime_WhenSuccessful(){
+        StepVerifier.create(animeController.streamAll())
+                .expectSubscription()
+                .expectNext(anime)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("listPage returns a mono of anime page tagged with the catalog version")
+    public void listPage_ReturnMonoOfAnimePage_WhenSuccessful(){
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/animes/page?limit=10"));
+
+        StepVerifier.create(animeController.listPage(null, 10, exchange))
+                .expectSubscription()
+                .assertNext(response -> {
+                    Assertions.assertEquals("W/\"c0ffee\"", response.getHeaders().getETag());
+                    Assertions.assertEquals(new AnimePage(List.of(anime), null), response.getBody());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("search returns a flux of anime")
+    public void search_ReturnFluxOfAnime_WhenSuccessful(){
+        StepVerifier.create(animeController.search("naruto", null, 10))
+                .expectSubscription()
+                .expectNext(anime)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("findAllById returns a flux of the animes found")
+    public void findAllById_ReturnFluxOfAnime_WhenSuccessful(){
+        StepVerifier.create(animeController.findAllById(List.of(1, 2)))
                 .expectSubscription()
                 .expectNext(anime)
                 .verifyComplete();
@@ -90,7 +238,19 @@ class AnimeControllerTest {
     public void findById_ReturnMonoOfAnime_WhenSuccessful(){
         StepVerifier.create(animeController.findById(1))
                 .expectSubscription()
-                .expectNext(anime)
+                .assertNext(response -> Assertions.assertEquals(anime, response.getBody()))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("findById tags the anime with an ETag that changes with its name")
+    public void findById_ReturnETag_WhichChangesWithName(){
+        StepVerifier.create(animeController.findById(1))
+                .expectSubscription()
+                .assertNext(response -> {
+                    Assertions.assertEquals("\"" + AnimeController.etag(anime) + "\"", response.getHeaders().getETag());
+                    Assertions.assertNotEquals(AnimeController.etag(anime), AnimeController.etag(anime.withName("Bleach")));
+                })
                 .verifyComplete();
     }
 
@@ -114,6 +274,42 @@ class AnimeControllerTest {
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("upsertBatch returns the inserted, updated and unchanged counts")
+    public void upsertBatch_ReturnCounts_WhenSuccessful(){
+        BDDMockito.when(animeService.upsertAll(List.of(anime))).
+                thenReturn(Mono.just(new AnimeUpsertResult(0, 1, 0)));
+
+        StepVerifier.create(animeController.upsertBatch(List.of(anime)))
+                .expectSubscription()
+                .expectNext(new AnimeUpsertResult(0, 1, 0))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("updateBatch returns the updated count and the missing ids")
+    public void updateBatch_ReturnResult_WhenSuccessful(){
+        BDDMockito.when(animeService.updateAll(List.of(anime))).
+                thenReturn(Mono.just(new AnimeBulkResult(1, List.of())));
+
+        StepVerifier.create(animeController.updateBatch(List.of(anime)))
+                .expectSubscription()
+                .expectNext(new AnimeBulkResult(1, List.of()))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("deleteBatch returns the deleted count and the missing ids")
+    public void deleteBatch_ReturnResult_WhenSuccessful(){
+        BDDMockito.when(animeService.deleteAll(List.of(1, 2))).
+                thenReturn(Mono.just(new AnimeBulkResult(1, List.of(2))));
+
+        StepVerifier.create(animeController.deleteBatch(List.of(1, 2)))
+                .expectSubscription()
+                .expectNext(new AnimeBulkResult(1, List.of(2)))
+                .verifyComplete();
+    }
+
     @Test
     @DisplayName("updated anime and return empty mono when successful")
     public void update_updateAnime_WhenSuccessful(){
@@ -136,4 +332,18 @@ class AnimeControllerTest {
                 .verifyComplete();
     }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("saveStream returns a flux of chunk results when successful")
+    public void saveStream_ReturnFluxOfChunkResults_WhenSuccessful(){
+        Flux<Anime> animes = Flux.just(AnimeCreator.createAnimeToBeSaved());
+        AnimeChunkResult chunkResult = new AnimeChunkResult(0, 1, List.of(anime.getId()), List.of());
+        BDDMockito.when(animeService.saveStream(animes)).
+                thenReturn(Flux.just(chunkResult).log());
+
+        StepVerifier.create(animeController.saveStream(animes))
+                .expectSubscription()
+                .expectNext(chunkResult)
+                .verifyComplete();
+    }
+
+}
@@ -0,0 +1,35 @@
+package br.com.pehenmo.springwebfluxessentials.controller;
+
+import br.com.pehenmo.springwebfluxessentials.config.AnimeProperties;
+import br.com.pehenmo.springwebfluxessentials.service.TokenService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import reactor.test.StepVerifier;
+
+class AuthControllerTest {
+
+    private final TokenService tokenService = new TokenService(new AnimeProperties());
+
+    private final AuthController authController = new AuthController(tokenService);
+
+    @Test
+    @DisplayName("token returns a token for the authenticated user")
+    public void token_ReturnToken_WhenAuthenticated(){
+        Authentication authentication = new UsernamePasswordAuthenticationToken("mario", null,
+                AuthorityUtils.createAuthorityList("ROLE_USER"));
+
+        StepVerifier.create(authController.token()
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication)))
+                .expectSubscription()
+                .assertNext(response -> {
+                    Assertions.assertEquals("mario", tokenService.verify(response.getToken()).getName());
+                    Assertions.assertEquals(tokenService.getTtl().getSeconds(), response.getExpiresIn());
+                })
+                .verifyComplete();
+    }
+}
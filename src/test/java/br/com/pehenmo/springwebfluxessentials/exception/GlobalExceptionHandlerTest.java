@@ -0,0 +1,74 @@
+package br.com.pehenmo.springwebfluxessentials.exception;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.web.WebProperties;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Map;
+
+class GlobalExceptionHandlerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private GlobalExceptionHandler handler;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        StaticApplicationContext applicationContext = new StaticApplicationContext();
+        applicationContext.refresh();
+        handler = new GlobalExceptionHandler(new CustomAttribute(), new WebProperties(),
+                applicationContext, ServerCodecConfigurer.create());
+        handler.afterPropertiesSet();
+    }
+
+    @Test
+    @DisplayName("handle renders a stackless error with the same fields as any other error")
+    public void handle_RenderSameFields_WhenErrorIsStackless() throws Exception {
+        MockServerWebExchange stackless = handle("/animes/\"42\"", new AnimeNotFoundException());
+        MockServerWebExchange regular = handle("/animes/\"42\"", new ResponseStatusException(HttpStatus.NOT_FOUND, "Anime not found"));
+
+        Assertions.assertEquals(HttpStatus.NOT_FOUND, stackless.getResponse().getStatusCode());
+        Assertions.assertEquals(MediaType.APPLICATION_JSON, stackless.getResponse().getHeaders().getContentType());
+
+        Map<String, Object> expected = body(regular);
+        Map<String, Object> actual = body(stackless);
+        Assertions.assertEquals(expected.keySet(), actual.keySet());
+        Assertions.assertEquals(stackless.getRequest().getId(), actual.remove("requestId"));
+        Assertions.assertTrue(actual.remove("timestamp").toString().matches("\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}\\.\\d{3}\\+00:00"));
+        expected.remove("requestId");
+        expected.remove("timestamp");
+        Assertions.assertEquals(expected, actual);
+    }
+
+    @Test
+    @DisplayName("handle renders the stack trace of a stackless error when the trace is requested")
+    public void handle_IncludeTrace_WhenTraceIsRequested() throws Exception {
+        MockServerWebExchange exchange = handle("/animes?trace=true", new StacklessResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid page size"));
+
+        Map<String, Object> body = body(exchange);
+        Assertions.assertEquals(400, body.get("status"));
+        Assertions.assertTrue(body.containsKey("trace"));
+    }
+
+    private MockServerWebExchange handle(String uri, Throwable error) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get(uri));
+        handler.handle(exchange, error).block();
+        return exchange;
+    }
+
+    private Map<String, Object> body(MockServerWebExchange exchange) throws Exception {
+        return objectMapper.readValue(exchange.getResponse().getBodyAsString().block(), new TypeReference<>() {
+        });
+    }
+}
@@ -1,18 +1,30 @@
 package br.com.pehenmo.springwebfluxessentials.integration;
 
+import br.com.pehenmo.springwebfluxessentials.dto.AnimeBulkResult;
+import br.com.pehenmo.springwebfluxessentials.dto.AnimeChange;
+import br.com.pehenmo.springwebfluxessentials.dto.AnimeChunkResult;
+import br.com.pehenmo.springwebfluxessentials.dto.AnimeUpsertResult;
+import br.com.pehenmo.springwebfluxessentials.dto.TokenResponse;
 import br.com.pehenmo.springwebfluxessentials.entity.Anime;
 import br.com.pehenmo.springwebfluxessentials.repository.AnimeRepository;
+import br.com.pehenmo.springwebfluxessentials.service.AnimeCache;
+import br.com.pehenmo.springwebfluxessentials.service.TokenService;
 import br.com.pehenmo.springwebfluxessentials.util.AnimeCreator;
 import br.com.pehenmo.springwebfluxessentials.util.WebTestClientUtil;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentMatchers;
 import org.mockito.BDDMockito;
+import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.test.context.support.WithUserDetails;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.reactive.server.WebTestClient;
@@ -42,6 +54,12 @@ public class AnimeControllerIT {
     @MockBean
     private AnimeRepository animeRepository;
 
+    @Autowired
+    private AnimeCache animeCache;
+
+    @Autowired
+    private TokenService tokenService;
+
     @Autowired
     private WebTestClient client;
 
@@ -59,7 +77,15 @@ public class AnimeControllerIT {
 
         clientInvalid = webTestClientUtil.authenticateClient(INVALID_USER, INVALID_PASSWORD);
 
-        BDDMockito.when(animeRepository.findAll()).
+        animeCache.invalidateAll();
+
+        BDDMockito.when(animeRepository.findPageAfter(0, 21)).
+                thenReturn(Flux.just(anime).log());
+
+        BDDMockito.when(animeRepository.catalogVersion()).
+                thenReturn(Mono.just("c0ffee"));
+
+        BDDMockito.when(animeRepository.streamAll(ArgumentMatchers.anyInt())).
                 thenReturn(Flux.just(anime).log());
 
         BDDMockito.when(animeRepository.findById(ArgumentMatchers.anyInt())).
@@ -68,13 +94,19 @@ public class AnimeControllerIT {
         BDDMockito.when(animeRepository.save(AnimeCreator.createAnimeToBeSaved())).
                 thenReturn(Mono.just(anime).log());
 
+        BDDMockito.when(animeRepository.updateNameById(ArgumentMatchers.anyInt(), ArgumentMatchers.anyString())).
+                thenReturn(Mono.just(1));
+
+        BDDMockito.when(animeRepository.removeById(ArgumentMatchers.anyInt())).
+                thenReturn(Mono.just(1));
+
         BDDMockito.when(animeRepository.save(AnimeCreator.createValidUpdatedAnime())).
                 thenReturn(Mono.just(anime).log());
 
         BDDMockito.when(animeRepository.delete(AnimeCreator.createValidAnime())).
                 thenReturn(Mono.empty());
 
-        BDDMockito.when(animeRepository.saveAll(List.of(AnimeCreator.createAnimeToBeSaved(), AnimeCreator.createAnimeToBeSaved()))).
+        BDDMockito.when(animeRepository.insertAll(ArgumentMatchers.eq(List.of(AnimeCreator.createAnimeToBeSaved(), AnimeCreator.createAnimeToBeSaved())), ArgumentMatchers.anyInt())).
                 thenReturn(Flux.just(anime, anime).log());
 
     }
@@ -132,6 +164,24 @@ public class AnimeControllerIT {
                 .isEqualTo(anime.getName());
     }
 
+    @Test
+    @DisplayName("findAll returns one page of anime with a link to the next one and user is sucecessful authenticated and has role USER")
+    @WithUserDetails(REGULAR_USER)
+    public void findAll_ReturnPageWithNextLink_WhenThereAreMoreAnimes() {
+        BDDMockito.when(animeRepository.findPageAfter(0, 2)).
+                thenReturn(Flux.just(anime, anime.withId(2)).log());
+
+        client
+                .get()
+                .uri("/animes?limit=1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().value(HttpHeaders.LINK, link -> Assertions.assertTrue(link.endsWith("/animes?limit=1&after=1>; rel=\"next\"")))
+                .expectBodyList(Anime.class)
+                .hasSize(1)
+                .contains(anime);
+    }
+
     @Test
     @DisplayName("findAll returns Unauthorized when user is Unauthorized")
     public void findAll_ReturnUnauthorized_WhenUserIsInvalid() {
@@ -157,6 +207,109 @@ public class AnimeControllerIT {
 
     }
 
+    @Test
+    @DisplayName("findAll streams animes as ndjson when requested and user is sucecessful authenticated and has role USER")
+    @WithUserDetails(REGULAR_USER)
+    public void findAll_StreamNdjson_WhenAcceptIsNdjson() {
+        client
+                .get()
+                .uri("/animes")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(Anime.class)
+                .hasSize(1)
+                .contains(anime);
+    }
+
+    @Test
+    @DisplayName("listPage returns a page of anime with next cursor and user is sucecessful authenticated and has role USER")
+    @WithUserDetails(REGULAR_USER)
+    public void listPage_ReturnPageOfAnime_WhenSuccessful() {
+        BDDMockito.when(animeRepository.findPageAfter(0, 2)).
+                thenReturn(Flux.just(anime, anime.withId(2)).log());
+
+        client
+                .get()
+                .uri("/animes/page?limit=1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.content[0].id").isEqualTo(anime.getId())
+                .jsonPath("$.content.length()").isEqualTo(1)
+                .jsonPath("$.next").isEqualTo(anime.getId());
+    }
+
+    @Test
+    @DisplayName("search returns the animes matching the query and user is sucecessful authenticated and has role USER")
+    @WithUserDetails(REGULAR_USER)
+    public void search_ReturnFluxOfAnime_WhenSuccessful() {
+        BDDMockito.when(animeRepository.search("naruto", 100, 0, 20)).
+                thenReturn(Flux.just(anime).log());
+
+        client
+                .get()
+                .uri("/animes/search?q=naruto")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Anime.class)
+                .contains(anime);
+    }
+
+    @Test
+    @DisplayName("search returns Bad Request when the query is blank and user is sucecessful authenticated and has role USER")
+    @WithUserDetails(REGULAR_USER)
+    public void search_ReturnBadRequest_WhenQueryIsBlank() {
+        client
+                .get()
+                .uri("/animes/search?q= ")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    @DisplayName("token returns a bearer token accepted by the anime routes when user is sucecessful authenticated")
+    @WithUserDetails(REGULAR_USER)
+    public void token_ReturnValidBearerToken_WhenSuccessful(){
+        String token = client
+                .post()
+                .uri("/auth/token")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(TokenResponse.class)
+                .returnResult()
+                .getResponseBody()
+                .getToken();
+
+        Assertions.assertEquals(REGULAR_USER, tokenService.verify(token).getName());
+    }
+
+    @Test
+    @DisplayName("token returns Unauthorized when the request is authenticated with a bearer token instead of the password")
+    public void token_ReturnUnauthorized_WhenAuthenticatedWithBearerToken(){
+        String token = tokenService.issue(new UsernamePasswordAuthenticationToken(REGULAR_USER, null,
+                AuthorityUtils.createAuthorityList("ROLE_USER")));
+
+        client
+                .post()
+                .uri("/auth/token")
+                .headers(headers -> headers.setBearerAuth(token))
+                .exchange()
+                .expectStatus().isUnauthorized();
+    }
+
+    @Test
+    @DisplayName("findById returns Unauthorized when the bearer token is invalid")
+    public void findById_ReturnUnauthorized_WhenBearerTokenIsInvalid(){
+        client
+                .get()
+                .uri("/animes/{id}", 1)
+                .headers(headers -> headers.setBearerAuth("invalid.token"))
+                .exchange()
+                .expectStatus().isUnauthorized();
+    }
+
     @Test
     @DisplayName("findById returns mono if anime when it exists and user is sucecessful authenticated and has role USER")
     @WithUserDetails(REGULAR_USER)
@@ -170,6 +323,59 @@ public class AnimeControllerIT {
                 .isEqualTo(anime);
     }
 
+    @Test
+    @DisplayName("findAllById returns the animes found for the ids and user is sucecessful authenticated and has role USER")
+    @WithUserDetails(REGULAR_USER)
+    public void findAllById_ReturnFluxOfAnime_WhenSuccessful(){
+        BDDMockito.when(animeRepository.findAllById(ArgumentMatchers.<Iterable<Integer>>any())).
+                thenReturn(Flux.just(anime).log());
+
+        client
+                .get()
+                .uri("/animes?ids=1,2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Anime.class)
+                .hasSize(1)
+                .contains(anime);
+    }
+
+    @Test
+    @DisplayName("findById returns Not Modified when the anime still matches the ETag and user is sucecessful authenticated and has role USER")
+    @WithUserDetails(REGULAR_USER)
+    public void findById_ReturnNotModified_WhenETagMatches(){
+        String etag = client
+                .get()
+                .uri("/animes/{id}", 1)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(Anime.class)
+                .getResponseHeaders().getETag();
+
+        client
+                .get()
+                .uri("/animes/{id}", 1)
+                .ifNoneMatch(etag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    @DisplayName("listAll returns Not Modified without listing the animes when the catalog still matches the ETag and user is sucecessful authenticated and has role USER")
+    @WithUserDetails(REGULAR_USER)
+    public void listAll_ReturnNotModified_WhenETagMatches(){
+        client
+                .get()
+                .uri("/animes")
+                .ifNoneMatch("W/\"c0ffee\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+
+        BDDMockito.verify(animeRepository, Mockito.never()).findPageAfter(ArgumentMatchers.anyInt(), ArgumentMatchers.anyInt());
+    }
+
     @Test
     @DisplayName("findById returns mono if anime when it exists and user is sucecessful authenticated and has role ADMIN")
     @WithUserDetails(ADMIN_USER)
@@ -317,8 +523,8 @@ public class AnimeControllerIT {
     @WithUserDetails(ADMIN_USER)
     public void delete_RemoveMonoError_WhenEmptyAnimeMonoIsReturned(){
 
-        BDDMockito.when(animeRepository.findById(ArgumentMatchers.anyInt())).
-                thenReturn(Mono.empty());
+        BDDMockito.when(animeRepository.removeById(ArgumentMatchers.anyInt())).
+                thenReturn(Mono.just(0));
 
         client
                 .delete()
@@ -385,8 +591,8 @@ public class AnimeControllerIT {
 
         Anime animeUpdated = AnimeCreator.createValidUpdatedAnime();
 
-        BDDMockito.when(animeRepository.findById(ArgumentMatchers.anyInt())).
-                thenReturn(Mono.empty());
+        BDDMockito.when(animeRepository.updateNameById(ArgumentMatchers.anyInt(), ArgumentMatchers.anyString())).
+                thenReturn(Mono.just(0));
 
         client
                 .put()
@@ -434,6 +640,141 @@ public class AnimeControllerIT {
                 .contains(anime);
     }
 
+    @Test
+    @DisplayName("saveAll streams chunk results for a ndjson body when user is sucecessful authenticated and has role ADMIN")
+    @WithUserDetails(ADMIN_USER)
+    public void saveAll_StreamChunkResults_WhenBodyIsNdjson(){
+        Anime animeToBeSaved = AnimeCreator.createAnimeToBeSaved();
+
+        client
+                .post()
+                .uri("/animes/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .body(Flux.just(animeToBeSaved, animeToBeSaved), Anime.class)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBodyList(AnimeChunkResult.class)
+                .hasSize(1)
+                .contains(new AnimeChunkResult(0, 2, List.of(anime.getId(), anime.getId()), List.of()));
+    }
+
+    @Test
+    @DisplayName("upsertBatch returns Forbidden when user is sucecessful authenticated and has role USER")
+    @WithUserDetails(REGULAR_USER)
+    public void upsertBatch_Forbidden_WhenUserIsNotAdmin(){
+        client
+                .put()
+                .uri("/animes/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(List.of(anime)))
+                .exchange()
+                .expectStatus().isForbidden();
+    }
+
+    @Test
+    @DisplayName("upsertBatch returns the upsert counts when successful and user is sucecessful authenticated and has role ADMIN")
+    @WithUserDetails(ADMIN_USER)
+    public void upsertBatch_ReturnCounts_WhenSuccessful(){
+        BDDMockito.when(animeRepository.upsertAll(ArgumentMatchers.eq(List.of(anime)), ArgumentMatchers.anyInt())).
+                thenReturn(Flux.just(AnimeChange.updated(anime)));
+
+        client
+                .put()
+                .uri("/animes/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(List.of(anime)))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(AnimeUpsertResult.class)
+                .isEqualTo(new AnimeUpsertResult(0, 1, 0));
+    }
+
+    @Test
+    @DisplayName("upsertBatch returns BadRequest on every replay of a payload with animes without id when user is sucecessful authenticated and has role ADMIN")
+    @WithUserDetails(ADMIN_USER)
+    public void upsertBatch_ReturnBadRequest_WhenReplayedWithAnimesWithoutId(){
+        List<Anime> animes = List.of(anime, AnimeCreator.createAnimeToBeSaved());
+
+        for (int replay = 0; replay < 2; replay++) {
+            client
+                    .put()
+                    .uri("/animes/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(BodyInserters.fromValue(animes))
+                    .exchange()
+                    .expectStatus().isBadRequest()
+                    .expectBody()
+                    .jsonPath("$.errors[0].row").isEqualTo(1)
+                    .jsonPath("$.errors[0].field").isEqualTo("id");
+        }
+
+        BDDMockito.verify(animeRepository, Mockito.never()).upsertAll(ArgumentMatchers.anyList(), ArgumentMatchers.anyInt());
+        BDDMockito.verify(animeRepository, Mockito.never()).insertAll(ArgumentMatchers.anyList(), ArgumentMatchers.anyInt());
+    }
+
+    @Test
+    @DisplayName("deleteBatch returns Forbidden when user is sucecessful authenticated and has role USER")
+    @WithUserDetails(REGULAR_USER)
+    public void deleteBatch_Forbidden_WhenUserIsNotAdmin(){
+        client
+                .method(HttpMethod.DELETE)
+                .uri("/animes/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(List.of(1, 2)))
+                .exchange()
+                .expectStatus().isForbidden();
+    }
+
+    @Test
+    @DisplayName("deleteBatch returns the deleted count and the missing ids when user is sucecessful authenticated and has role ADMIN")
+    @WithUserDetails(ADMIN_USER)
+    public void deleteBatch_ReturnResult_WhenSuccessful(){
+        BDDMockito.when(animeRepository.removeAllById(List.of(1, 2))).
+                thenReturn(Flux.just(1));
+
+        client
+                .method(HttpMethod.DELETE)
+                .uri("/animes/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(List.of(1, 2)))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(AnimeBulkResult.class)
+                .isEqualTo(new AnimeBulkResult(1, List.of(2)));
+    }
+
+    @Test
+    @DisplayName("updateBatch returns Forbidden when user is sucecessful authenticated and has role USER")
+    @WithUserDetails(REGULAR_USER)
+    public void updateBatch_Forbidden_WhenUserIsNotAdmin(){
+        client
+                .patch()
+                .uri("/animes/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(List.of(anime)))
+                .exchange()
+                .expectStatus().isForbidden();
+    }
+
+    @Test
+    @DisplayName("updateBatch returns the updated count and the missing ids when user is sucecessful authenticated and has role ADMIN")
+    @WithUserDetails(ADMIN_USER)
+    public void updateBatch_ReturnResult_WhenSuccessful(){
+        BDDMockito.when(animeRepository.updateNamesById(List.of(anime))).
+                thenReturn(Flux.just(anime.getId()));
+
+        client
+                .patch()
+                .uri("/animes/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BodyInserters.fromValue(List.of(anime)))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(AnimeBulkResult.class)
+                .isEqualTo(new AnimeBulkResult(1, List.of()));
+    }
+
     @Test
     @DisplayName("saveAll error creates a list of animes when user is Unauthorized")
     public void saveAll_Unauthorized_WhenUserIsNotValid(){
@@ -452,9 +793,6 @@ public class AnimeControllerIT {
     @WithUserDetails(ADMIN_USER)
     public void saveAll_ReturnsMonoError_WhenInvalidName(){
 
-        BDDMockito.when(animeRepository.saveAll(ArgumentMatchers.anyIterable())).
-                thenReturn(Flux.just(anime, anime.withName("")).log());
-
         Anime animeToBeSaved = AnimeCreator.createAnimeToBeSaved();
 
         client
@@ -466,8 +804,11 @@ public class AnimeControllerIT {
                 .expectStatus().isBadRequest()
                 .expectBody()
                 .jsonPath("$.status").isEqualTo(400)
-                .jsonPath("$.developmentMessage").isEqualTo("a custom ResponseStatusException");
+                .jsonPath("$.developmentMessage").isEqualTo("a custom ResponseStatusException")
+                .jsonPath("$.errors[0].row").isEqualTo(1)
+                .jsonPath("$.errors[0].field").isEqualTo("name");
 
+        BDDMockito.verify(animeRepository, Mockito.never()).insertAll(ArgumentMatchers.anyList(), ArgumentMatchers.anyInt());
     }
 
 }
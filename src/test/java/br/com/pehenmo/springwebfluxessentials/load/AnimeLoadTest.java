@@ -0,0 +1,291 @@
+package br.com.pehenmo.springwebfluxessentials.load;
+
+import br.com.pehenmo.springwebfluxessentials.dto.TokenResponse;
+import br.com.pehenmo.springwebfluxessentials.entity.Anime;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.r2dbc.convert.R2dbcCustomConversions;
+import org.springframework.data.r2dbc.mapping.R2dbcMappingContext;
+import org.springframework.data.relational.core.mapping.NamingStrategy;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestExecutionListeners;
+import org.springframework.test.context.support.DependencyInjectionTestExecutionListener;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Boots the whole application against an in-memory H2 database and drives concurrent
+ * authenticated traffic across the {@code /animes} routes, reporting the throughput and
+ * latency percentiles of every route. The run fails when the error rate crosses its
+ * threshold, and when the throughput or the p99 latency cross theirs if they are set.
+ * <p>
+ * The throughput and latency depend on the machine, so they are only checked when asked for.
+ * {@code -Dload.min-throughput=100 -Dload.max-p99=1s} assume a machine of 4 cores or more
+ * at the default concurrency; a single core falls well short of both.
+ * <p>
+ * Excluded from the default build, run it with {@code mvn -Pload test}. Every setting can
+ * be overridden with a {@code -Dload.*} system property.
+ */
+@Slf4j
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("load")
+// only inject the port, the security test listeners hook into every operator and would
+// skew the numbers of the server running in the same JVM
+@TestExecutionListeners(DependencyInjectionTestExecutionListener.class)
+class AnimeLoadTest {
+
+    private static final String PASSWORD = "loadtest";
+    private static final int SEEDED_ANIMES = 1_000;
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final Duration warmup = duration("load.warmup", "20s");
+    private final Duration duration = duration("load.duration", "30s");
+    private final int concurrency = Integer.getInteger("load.concurrency", 16);
+    private final double minThroughput = Double.parseDouble(System.getProperty("load.min-throughput", "0"));
+    // the highest latency recorded, so no request is over it unless a lower one is set
+    private final Duration maxP99 = duration("load.max-p99", "1m");
+    private final double maxErrorRate = Double.parseDouble(System.getProperty("load.max-error-rate", "0.001"));
+    private final String report = System.getProperty("load.report", "target/load-test-report.json");
+
+    @LocalServerPort
+    private int port;
+
+    @TestConfiguration
+    static class H2Configuration {
+
+        /**
+         * Quotes the generated identifiers, as H2 cannot parse the unquoted {@code system_user} table.
+         */
+        @Bean
+        R2dbcMappingContext quotingR2dbcMappingContext(ObjectProvider<NamingStrategy> namingStrategy,
+                                                       R2dbcCustomConversions r2dbcCustomConversions) {
+            R2dbcMappingContext mappingContext = new R2dbcMappingContext(namingStrategy.getIfAvailable(() -> NamingStrategy.INSTANCE));
+            mappingContext.setSimpleTypeHolder(r2dbcCustomConversions.getSimpleTypeHolder());
+            mappingContext.setForceQuote(true);
+            return mappingContext;
+        }
+    }
+
+    private WebClient user;
+    private WebClient admin;
+    private final Queue<Integer> created = new ConcurrentLinkedQueue<>();
+
+    @Test
+    @DisplayName("animes routes sustain the expected throughput and latency under concurrent load")
+    public void animes_SustainThroughputAndLatency_UnderConcurrentLoad() throws IOException {
+        WebClient client = WebClient.builder().baseUrl("http://localhost:" + port).build();
+        user = authenticated(client, "load-user");
+        admin = authenticated(client, "load-admin");
+
+        List<Route> routes = List.of(
+                new Route("GET /animes/{id}", 40, () -> user.get().uri("/animes/{id}", randomSeededId())
+                        .retrieve().bodyToMono(Anime.class)),
+                new Route("GET /animes/page", 15, () -> user.get()
+                        .uri(uri -> uri.path("/animes/page").queryParam("after", randomSeededId()).build())
+                        .retrieve().bodyToMono(String.class)),
+                new Route("GET /animes", 1, () -> user.get().uri("/animes")
+                        .retrieve().bodyToFlux(Anime.class).then()),
+                new Route("GET /animes (ndjson)", 1, () -> user.get().uri("/animes")
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .retrieve().bodyToFlux(Anime.class).then()),
+                new Route("POST /animes", 12, () -> admin.post().uri("/animes")
+                        .bodyValue(new Anime(null, "Load " + ThreadLocalRandom.current().nextInt()))
+                        .retrieve().bodyToMono(Anime.class)
+                        .doOnNext(anime -> created.add(anime.getId()))),
+                new Route("POST /animes/batch", 2, () -> admin.post().uri("/animes/batch")
+                        .bodyValue(newAnimes(10))
+                        .retrieve().bodyToFlux(Anime.class)
+                        .doOnNext(anime -> created.add(anime.getId())).then()),
+                new Route("POST /animes/batch (ndjson)", 1, () -> admin.post().uri("/animes/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .body(Flux.fromIterable(newAnimes(10)), Anime.class)
+                        .retrieve().bodyToFlux(String.class).then()),
+                new Route("PUT /animes/{id}", 12, () -> {
+                    int id = randomSeededId();
+                    return admin.put().uri("/animes/{id}", id)
+                            .bodyValue(new Anime(id, "Anime " + id))
+                            .retrieve().toBodilessEntity();
+                }),
+                new Route("DELETE /animes/{id}", 16, () -> Mono.justOrEmpty(created.poll())
+                        .flatMap(id -> admin.delete().uri("/animes/{id}", id)
+                                .retrieve().toBodilessEntity())));
+
+        int totalWeight = routes.stream().mapToInt(route -> route.weight).sum();
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long deadline = measureFrom + duration.toNanos();
+
+        Flux.range(0, concurrency)
+                .flatMap(worker -> Mono.defer(() -> pick(routes, totalWeight).call(measureFrom))
+                        .repeat(() -> System.nanoTime() < deadline), concurrency)
+                .blockLast(warmup.plus(duration).plusMinutes(1));
+
+        Histogram overall = new Histogram(HIGHEST_LATENCY_MICROS, 3);
+        routes.forEach(route -> overall.add(route.latencies));
+        long requests = overall.getTotalCount();
+        long errors = routes.stream().mapToLong(route -> route.errors.get()).sum();
+        report(routes, overall, errors);
+
+        double throughput = requests / (duration.toNanos() / 1e9);
+        double errorRate = requests + errors == 0 ? 0 : (double) errors / (requests + errors);
+        long p99 = overall.getValueAtPercentile(99);
+
+        Assertions.assertAll(
+                () -> Assertions.assertTrue(throughput >= minThroughput,
+                        String.format("Throughput %.1f req/s is below %.1f req/s", throughput, minThroughput)),
+                () -> Assertions.assertTrue(p99 <= maxP99.toNanos() / 1_000,
+                        String.format("p99 latency %.2f ms is above %d ms", p99 / 1e3, maxP99.toMillis())),
+                () -> Assertions.assertTrue(errorRate <= maxErrorRate,
+                        String.format("Error rate %.4f is above %.4f", errorRate, maxErrorRate)));
+    }
+
+    private WebClient authenticated(WebClient client, String username) {
+        TokenResponse token = client.post().uri("/auth/token")
+                .headers(headers -> headers.setBasicAuth(username, PASSWORD))
+                .retrieve()
+                .bodyToMono(TokenResponse.class)
+                .block(Duration.ofSeconds(30));
+        return client.mutate()
+                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token.getToken())
+                .build();
+    }
+
+    private void report(List<Route> routes, Histogram overall, long errors) throws IOException {
+        double seconds = duration.toNanos() / 1e9;
+        Map<String, Object> perRoute = new LinkedHashMap<>();
+        log.info(String.format("%-30s %9s %7s %9s %9s %9s %9s %9s", "route", "requests", "errors", "req/s",
+                "p50 ms", "p95 ms", "p99 ms", "max ms"));
+        for (Route route : routes) {
+            perRoute.put(route.name, summary(route.latencies, route.errors.get(), seconds));
+        }
+        Map<String, Object> total = summary(overall, errors, seconds);
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        results.put("concurrency", concurrency);
+        results.put("durationSeconds", seconds);
+        results.put("total", total);
+        results.put("routes", perRoute);
+        perRoute.forEach((name, summary) -> log(name, summary));
+        log("total", total);
+
+        File file = new File(report);
+        file.getParentFile().mkdirs();
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, results);
+        log.info("Load test report written to {}", file.getAbsolutePath());
+    }
+
+    private static Map<String, Object> summary(Histogram latencies, long errors, double seconds) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("requests", latencies.getTotalCount());
+        summary.put("errors", errors);
+        summary.put("throughput", latencies.getTotalCount() / seconds);
+        summary.put("p50Millis", latencies.getValueAtPercentile(50) / 1e3);
+        summary.put("p95Millis", latencies.getValueAtPercentile(95) / 1e3);
+        summary.put("p99Millis", latencies.getValueAtPercentile(99) / 1e3);
+        summary.put("maxMillis", latencies.getMaxValue() / 1e3);
+        return summary;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void log(String name, Object summary) {
+        Map<String, Object> values = (Map<String, Object>) summary;
+        log.info(String.format("%-30s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f", name,
+                values.get("requests"), values.get("errors"), values.get("throughput"),
+                values.get("p50Millis"), values.get("p95Millis"), values.get("p99Millis"), values.get("maxMillis")));
+    }
+
+    private static Route pick(List<Route> routes, int totalWeight) {
+        int ticket = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Route route : routes) {
+            ticket -= route.weight;
+            if (ticket < 0) {
+                return route;
+            }
+        }
+        return routes.get(routes.size() - 1);
+    }
+
+    private static int randomSeededId() {
+        return ThreadLocalRandom.current().nextInt(1, SEEDED_ANIMES + 1);
+    }
+
+    private static List<Anime> newAnimes(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new Anime(null, "Load batch " + ThreadLocalRandom.current().nextInt()))
+                .collect(Collectors.toList());
+    }
+
+    private static Duration duration(String property, String defaultValue) {
+        return DurationStyle.detectAndParse(System.getProperty(property, defaultValue));
+    }
+
+    /**
+     * A weighted request of the mix, with the latencies and errors of the requests it
+     * started after the warmup.
+     */
+    private static final class Route {
+
+        private final String name;
+        private final int weight;
+        private final Supplier<Mono<?>> request;
+        private final Histogram latencies = new ConcurrentHistogram(HIGHEST_LATENCY_MICROS, 3);
+        private final AtomicLong errors = new AtomicLong();
+
+        private Route(String name, int weight, Supplier<Mono<?>> request) {
+            this.name = name;
+            this.weight = weight;
+            this.request = request;
+        }
+
+        private Mono<Void> call(long measureFrom) {
+            long start = System.nanoTime();
+            boolean measured = start >= measureFrom;
+            return request.get()
+                    .doOnSuccess(ignored -> {
+                        if (measured) {
+                            latencies.recordValue(Math.min((System.nanoTime() - start) / 1_000, HIGHEST_LATENCY_MICROS));
+                        }
+                    })
+                    .doOnError(error -> {
+                        if (measured) {
+                            errors.incrementAndGet();
+                        }
+                        log.debug("{} failed", name, error);
+                    })
+                    .onErrorResume(error -> Mono.empty())
+                    .then();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package br.com.pehenmo.springwebfluxessentials.load;
+
+import org.h2.api.Trigger;
+
+import java.sql.Connection;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * H2 counterpart of the catalog version of {@code db/anime-catalog-version.sql}, registered by
+ * {@code load/schema.sql} as a statement trigger on {@code anime} and read through the
+ * {@code anime_catalog_version} view. H2 does not let a trigger write under auto-commit, so
+ * the version is kept here rather than in a table, outside of the transactions.
+ */
+public class H2CatalogVersion implements Trigger {
+
+    private static final AtomicLong VERSION = new AtomicLong();
+
+    public static long version() {
+        return VERSION.get();
+    }
+
+    @Override
+    public void fire(Connection connection, Object[] oldRow, Object[] newRow) {
+        VERSION.incrementAndGet();
+    }
+}
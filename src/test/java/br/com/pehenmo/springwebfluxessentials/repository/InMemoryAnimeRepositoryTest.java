@@ -0,0 +1,195 @@
+package br.com.pehenmo.springwebfluxessentials.repository;
+
+import br.com.pehenmo.springwebfluxessentials.config.AnimeProperties;
+import br.com.pehenmo.springwebfluxessentials.dto.AnimeChange;
+import br.com.pehenmo.springwebfluxessentials.entity.Anime;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.TransientDataAccessResourceException;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+class InMemoryAnimeRepositoryTest {
+
+    private final InMemoryAnimeRepository animeRepository = new InMemoryAnimeRepository(new ObjectMapper(), new AnimeProperties());
+
+    @Test
+    @DisplayName("save assigns ids to new animes and findAll returns them ordered by id")
+    public void save_AssignIds_WhenAnimesAreNew(){
+        StepVerifier.create(animeRepository.saveAll(List.of(new Anime(null, "Naruto"), new Anime(null, "Bleach"))))
+                .expectNext(new Anime(1, "Naruto"), new Anime(2, "Bleach"))
+                .verifyComplete();
+
+        StepVerifier.create(animeRepository.findAll())
+                .expectNext(new Anime(1, "Naruto"), new Anime(2, "Bleach"))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("save fails when the anime to update does not exist")
+    public void save_Error_WhenAnimeDoesNotExist(){
+        StepVerifier.create(animeRepository.save(new Anime(42, "Naruto")))
+                .verifyError(TransientDataAccessResourceException.class);
+    }
+
+    @Test
+    @DisplayName("saveAll writes nothing when one of the animes to update does not exist")
+    public void saveAll_WriteNothing_WhenAnimeDoesNotExist(){
+        animeRepository.reload(List.of(new Anime(1, "Naruto")));
+
+        StepVerifier.create(animeRepository.saveAll(List.of(new Anime(1, "Naruto Shippuden"), new Anime(null, "Bleach"), new Anime(42, "Monster"))))
+                .verifyError(TransientDataAccessResourceException.class);
+
+        StepVerifier.create(animeRepository.findAll())
+                .expectNext(new Anime(1, "Naruto"))
+                .verifyComplete();
+        StepVerifier.create(animeRepository.save(new Anime(null, "Bleach")))
+                .expectNext(new Anime(2, "Bleach"))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("findPageAfter returns the animes after the cursor up to the limit")
+    public void findPageAfter_ReturnNextAnimes_WhenSuccessful(){
+        animeRepository.reload(List.of(new Anime(1, "Naruto"), new Anime(3, "Bleach"), new Anime(5, "Monster")));
+
+        StepVerifier.create(animeRepository.findPageAfter(1, 1))
+                .expectNext(new Anime(3, "Bleach"))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("updateNameById and removeById return the number of affected animes")
+    public void updateAndRemove_ReturnAffectedCount(){
+        animeRepository.reload(List.of(new Anime(1, "Naruto")));
+
+        StepVerifier.create(animeRepository.updateNameById(1, "Naruto Shippuden")).expectNext(1).verifyComplete();
+        StepVerifier.create(animeRepository.updateNameById(2, "Bleach")).expectNext(0).verifyComplete();
+        StepVerifier.create(animeRepository.findById(1)).expectNext(new Anime(1, "Naruto Shippuden")).verifyComplete();
+
+        StepVerifier.create(animeRepository.removeById(1)).expectNext(1).verifyComplete();
+        StepVerifier.create(animeRepository.removeById(1)).expectNext(0).verifyComplete();
+        StepVerifier.create(animeRepository.findById(1)).verifyComplete();
+    }
+
+    @Test
+    @DisplayName("updateNamesById and removeAllById return the ids of the affected animes")
+    public void updateNamesByIdAndRemoveAllById_ReturnAffectedIds(){
+        animeRepository.reload(List.of(new Anime(1, "Naruto"), new Anime(2, "Bleach"), new Anime(3, "Monster")));
+
+        StepVerifier.create(animeRepository.updateNamesById(List.of(new Anime(2, "Bleach: TYBW"), new Anime(4, "Mushishi"))))
+                .expectNext(2)
+                .verifyComplete();
+        StepVerifier.create(animeRepository.removeAllById(List.of(1, 3, 4)))
+                .expectNext(1, 3)
+                .verifyComplete();
+
+        StepVerifier.create(animeRepository.findAll())
+                .expectNext(new Anime(2, "Bleach: TYBW"))
+                .verifyComplete();
+        StepVerifier.create(animeRepository.search("naruto", 100, 0, 10))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("upsertAll inserts new ids, renames existing ones and skips those up to date")
+    public void upsertAll_ReturnChanges_WhenSuccessful(){
+        animeRepository.reload(List.of(new Anime(1, "Naruto"), new Anime(2, "Bleach")));
+
+        StepVerifier.create(animeRepository.upsertAll(List.of(new Anime(1, "Naruto"), new Anime(2, "Bleach: TYBW"), new Anime(5, "Monster")), 10))
+                .expectNext(AnimeChange.updated(new Anime(2, "Bleach: TYBW")), AnimeChange.created(new Anime(5, "Monster")))
+                .verifyComplete();
+
+        StepVerifier.create(animeRepository.save(new Anime(null, "Mushishi")))
+                .expectNext(new Anime(6, "Mushishi"))
+                .verifyComplete();
+        StepVerifier.create(animeRepository.search("bleach", 100, 0, 10))
+                .expectNext(new Anime(2, "Bleach: TYBW"))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("search ranks names matching earlier and shorter first, by prefix or substring")
+    public void search_RankMatches_WhenSuccessful(){
+        animeRepository.reload(List.of(new Anime(1, "Boruto: Naruto Next Generations"),
+                new Anime(2, "Naruto Shippuden"), new Anime(3, "Naruto"), new Anime(4, "Bleach")));
+
+        StepVerifier.create(animeRepository.search("NARUTO", 100, 0, 10))
+                .expectNext(new Anime(3, "Naruto"), new Anime(2, "Naruto Shippuden"), new Anime(1, "Boruto: Naruto Next Generations"))
+                .verifyComplete();
+        StepVerifier.create(animeRepository.search("ru", 100, 1, 1))
+                .expectNext(new Anime(2, "Naruto Shippuden"))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("search only ranks the first candidates matching by id")
+    public void search_RankFirstCandidates_WhenManyAnimesMatch(){
+        animeRepository.reload(List.of(new Anime(1, "Boruto: Naruto Next Generations"),
+                new Anime(2, "Naruto Shippuden"), new Anime(3, "Naruto")));
+
+        StepVerifier.create(animeRepository.search("naruto", 2, 0, 10))
+                .expectNext(new Anime(2, "Naruto Shippuden"), new Anime(1, "Boruto: Naruto Next Generations"))
+                .verifyComplete();
+        StepVerifier.create(animeRepository.search("ru", 2, 0, 10))
+                .expectNext(new Anime(2, "Naruto Shippuden"), new Anime(1, "Boruto: Naruto Next Generations"))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("search follows renames and removals")
+    public void search_FollowWrites_WhenNamesChange(){
+        animeRepository.reload(List.of(new Anime(1, "Naruto"), new Anime(2, "Bleach")));
+
+        StepVerifier.create(animeRepository.updateNameById(1, "Monster")).expectNext(1).verifyComplete();
+        StepVerifier.create(animeRepository.removeById(2)).expectNext(1).verifyComplete();
+
+        StepVerifier.create(animeRepository.search("naruto", 100, 0, 10)).verifyComplete();
+        StepVerifier.create(animeRepository.search("blea", 100, 0, 10)).verifyComplete();
+        StepVerifier.create(animeRepository.search("onst", 100, 0, 10))
+                .expectNext(new Anime(1, "Monster"))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("catalogVersion changes when an anime is renamed and stays the same when nothing is written")
+    public void catalogVersion_Change_WhenCatalogChanges(){
+        animeRepository.reload(List.of(new Anime(1, "Naruto")));
+        String version = animeRepository.catalogVersion().block();
+
+        StepVerifier.create(animeRepository.updateNameById(2, "Bleach")).expectNext(0).verifyComplete();
+        StepVerifier.create(animeRepository.upsertAll(List.of(new Anime(1, "Naruto")), 10)).verifyComplete();
+        StepVerifier.create(animeRepository.catalogVersion()).expectNext(version).verifyComplete();
+
+        StepVerifier.create(animeRepository.updateNameById(1, "Bleach")).expectNext(1).verifyComplete();
+        StepVerifier.create(animeRepository.catalogVersion())
+                .assertNext(changed -> Assertions.assertNotEquals(version, changed))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("a snapshot is reloaded on startup and new ids continue after it")
+    public void snapshot_ReloadCatalog_WhenStarting(@TempDir Path directory) throws IOException {
+        Path snapshot = directory.resolve("animes.json");
+        animeRepository.reload(List.of(new Anime(1, "Naruto"), new Anime(7, "Bleach")));
+        animeRepository.snapshot(snapshot);
+
+        AnimeProperties animeProperties = new AnimeProperties();
+        animeProperties.getEdge().setSnapshot(snapshot);
+        InMemoryAnimeRepository restarted = new InMemoryAnimeRepository(new ObjectMapper(), animeProperties);
+        restarted.afterPropertiesSet();
+
+        StepVerifier.create(restarted.findAll())
+                .expectNext(new Anime(1, "Naruto"), new Anime(7, "Bleach"))
+                .verifyComplete();
+        StepVerifier.create(restarted.insertAll(List.of(new Anime(null, "Monster")), 1))
+                .expectNext(new Anime(8, "Monster"))
+                .verifyComplete();
+    }
+}
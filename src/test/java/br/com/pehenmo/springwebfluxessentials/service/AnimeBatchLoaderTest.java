@@ -0,0 +1,112 @@
+package br.com.pehenmo.springwebfluxessentials.service;
+
+import br.com.pehenmo.springwebfluxessentials.config.AnimeProperties;
+import br.com.pehenmo.springwebfluxessentials.entity.Anime;
+import br.com.pehenmo.springwebfluxessentials.repository.AnimeRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+class AnimeBatchLoaderTest {
+
+    private final AnimeRepository animeRepository = Mockito.mock(AnimeRepository.class);
+
+    private final AnimeProperties properties = new AnimeProperties();
+
+    {
+        // wide enough for the lookups of a test to always share a window
+        properties.getLookup().setBatchWindow(Duration.ofMillis(200));
+    }
+
+    @Test
+    @DisplayName("load coalesces the lookups of a window into a single query")
+    public void load_CoalesceLookups_WhenMadeWithinWindow(){
+        AnimeBatchLoader loader = new AnimeBatchLoader(animeRepository, properties);
+        BDDMockito.when(animeRepository.findAllById(ArgumentMatchers.<Iterable<Integer>>any())).
+                thenReturn(Flux.just(new Anime(1, "Naruto"), new Anime(2, "Bleach")));
+
+        StepVerifier.create(Flux.mergeSequential(loader.load(1), loader.load(42), loader.load(2), loader.load(1)))
+                .expectNext(new Anime(1, "Naruto"), new Anime(2, "Bleach"), new Anime(1, "Naruto"))
+                .verifyComplete();
+
+        Mockito.verify(animeRepository).findAllById(Set.of(1, 42, 2));
+        Mockito.verify(animeRepository, Mockito.never()).findById(ArgumentMatchers.anyInt());
+    }
+
+    @Test
+    @DisplayName("load reads from the primary, as the animes loaded are cached")
+    public void load_NotPreferReplica_WhenQuerying(){
+        AnimeBatchLoader loader = new AnimeBatchLoader(animeRepository, properties);
+        List<ContextView> contexts = new CopyOnWriteArrayList<>();
+        BDDMockito.when(animeRepository.findAllById(ArgumentMatchers.<Iterable<Integer>>any())).
+                thenReturn(Flux.deferContextual(context -> {
+                    contexts.add(context);
+                    return Flux.just(new Anime(1, "Naruto"), new Anime(2, "Bleach"));
+                }));
+
+        StepVerifier.create(Flux.merge(loader.load(1), loader.load(2)).count())
+                .expectNext(2L)
+                .verifyComplete();
+
+        Assertions.assertEquals(1, contexts.size());
+        Assertions.assertTrue(contexts.get(0).isEmpty());
+    }
+
+    @Test
+    @DisplayName("load splits the lookups of a window into batches of the maximum size")
+    public void load_SplitBatches_WhenWindowHasMoreLookupsThanMaximum(){
+        properties.getLookup().setMaxBatchSize(2);
+        AnimeBatchLoader loader = new AnimeBatchLoader(animeRepository, properties);
+        BDDMockito.when(animeRepository.findAllById(ArgumentMatchers.<Iterable<Integer>>any())).
+                thenReturn(Flux.just(new Anime(1, "Naruto"), new Anime(2, "Bleach")));
+        BDDMockito.when(animeRepository.findById(3)).
+                thenReturn(Mono.just(new Anime(3, "Monster")));
+
+        StepVerifier.create(Flux.merge(loader.load(1), loader.load(2), loader.load(3)).map(Anime::getId).collectList())
+                .expectNextMatches(ids -> ids.containsAll(List.of(1, 2, 3)))
+                .verifyComplete();
+
+        Mockito.verify(animeRepository).findAllById(Set.of(1, 2));
+        Mockito.verify(animeRepository).findById(3);
+    }
+
+    @Test
+    @DisplayName("load fails every lookup of the batch when the query fails")
+    public void load_Error_WhenQueryFails(){
+        AnimeBatchLoader loader = new AnimeBatchLoader(animeRepository, properties);
+        BDDMockito.when(animeRepository.findAllById(ArgumentMatchers.<Iterable<Integer>>any())).
+                thenReturn(Flux.error(new IllegalStateException()));
+
+        StepVerifier.create(Flux.merge(loader.load(1).materialize(), loader.load(2).materialize()))
+                .expectNextMatches(signal -> signal.getThrowable() instanceof IllegalStateException)
+                .expectNextMatches(signal -> signal.getThrowable() instanceof IllegalStateException)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("load looks each anime up on its own when the window is zero")
+    public void load_FindById_WhenWindowIsZero(){
+        properties.getLookup().setBatchWindow(Duration.ZERO);
+        AnimeBatchLoader loader = new AnimeBatchLoader(animeRepository, properties);
+        BDDMockito.when(animeRepository.findById(1)).
+                thenReturn(Mono.just(new Anime(1, "Naruto")));
+
+        StepVerifier.create(loader.load(1))
+                .expectNext(new Anime(1, "Naruto"))
+                .verifyComplete();
+
+        Mockito.verify(animeRepository, Mockito.never()).findAllById(ArgumentMatchers.<Iterable<Integer>>any());
+    }
+}
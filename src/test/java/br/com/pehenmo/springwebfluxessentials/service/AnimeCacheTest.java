@@ -0,0 +1,98 @@
+package br.com.pehenmo.springwebfluxessentials.service;
+
+import br.com.pehenmo.springwebfluxessentials.config.AnimeProperties;
+import br.com.pehenmo.springwebfluxessentials.entity.Anime;
+import br.com.pehenmo.springwebfluxessentials.util.AnimeCreator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+class AnimeCacheTest {
+
+    private final Anime anime = AnimeCreator.createValidAnime();
+
+    @Test
+    @DisplayName("get loads the anime once and serves the following calls from the cache")
+    public void get_LoadOnce_WhenEnabled(){
+        AnimeCache animeCache = new AnimeCache(new AnimeProperties());
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(animeCache.get(1, id -> Mono.fromCallable(() -> {
+                        loads.incrementAndGet();
+                        return anime;
+                    })))
+                    .expectNext(anime)
+                    .verifyComplete();
+        }
+
+        Assertions.assertEquals(1, loads.get());
+        Assertions.assertEquals(2, animeCache.stats().hitCount());
+    }
+
+    @Test
+    @DisplayName("bindTo publishes the hits and misses of the cache")
+    public void bindTo_PublishHitsAndMisses_WhenEnabled(){
+        AnimeCache animeCache = new AnimeCache(new AnimeProperties());
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        animeCache.bindTo(meterRegistry);
+
+        animeCache.get(1, id -> Mono.just(anime)).block();
+        animeCache.get(1, id -> Mono.just(anime)).block();
+
+        Assertions.assertEquals(1, meterRegistry.get("cache.gets").tags("cache", "anime", "result", "hit").functionCounter().count());
+        Assertions.assertEquals(1, meterRegistry.get("cache.gets").tags("cache", "anime", "result", "miss").functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("get returns the anime when the loader writes to the cache while loading")
+    public void get_ReturnAnime_WhenLoaderWritesToCache(){
+        AnimeCache animeCache = new AnimeCache(new AnimeProperties());
+
+        StepVerifier.create(animeCache.get(1, id -> Mono.fromCallable(() -> {
+                    animeCache.put(anime);
+                    return anime;
+                })))
+                .expectNext(anime)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("get does not cache animes that do not exist")
+    public void get_NotCache_WhenAnimeDoesNotExist(){
+        AnimeCache animeCache = new AnimeCache(new AnimeProperties());
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(animeCache.get(1, id -> Mono.<Anime>empty().doOnSubscribe(s -> loads.incrementAndGet())))
+                    .verifyComplete();
+        }
+
+        Assertions.assertEquals(2, loads.get());
+    }
+
+    @Test
+    @DisplayName("get always calls the loader when the cache is disabled")
+    public void get_AlwaysLoad_WhenDisabled(){
+        AnimeProperties animeProperties = new AnimeProperties();
+        animeProperties.getCache().setEnabled(false);
+        AnimeCache animeCache = new AnimeCache(animeProperties);
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(animeCache.get(1, id -> Mono.fromCallable(() -> {
+                        loads.incrementAndGet();
+                        return anime;
+                    })))
+                    .expectNext(anime)
+                    .verifyComplete();
+        }
+
+        Assertions.assertEquals(3, loads.get());
+    }
+}
@@ -0,0 +1,87 @@
+package br.com.pehenmo.springwebfluxessentials.service;
+
+import br.com.pehenmo.springwebfluxessentials.config.AnimeProperties;
+import br.com.pehenmo.springwebfluxessentials.dto.AnimeChange;
+import br.com.pehenmo.springwebfluxessentials.util.AnimeCreator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.Exceptions;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Optional;
+
+class AnimeChangeFeedTest {
+
+    private final AnimeChange created = AnimeChange.created(AnimeCreator.createValidAnime());
+    private final AnimeChange updated = AnimeChange.updated(AnimeCreator.createValidUpdatedAnime());
+    private final AnimeChange deleted = AnimeChange.deleted(1);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("publish delivers the changes to every subscriber")
+    public void publish_DeliverChanges_ToEverySubscriber(){
+        AnimeChangeFeed feed = feed(2, AnimeProperties.ChangesOverflow.DROP_OLDEST);
+
+        StepVerifier.create(feed.changes().take(2).zipWith(feed.changes().take(2)))
+                .then(() -> feed.publish(List.of(created, deleted)).block())
+                .assertNext(changes -> {
+                    Assertions.assertEquals(created, changes.getT1());
+                    Assertions.assertEquals(created, changes.getT2());
+                })
+                .assertNext(changes -> {
+                    Assertions.assertEquals(deleted, changes.getT1());
+                    Assertions.assertEquals(deleted, changes.getT2());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("publish completes when nobody subscribed")
+    public void publish_Complete_WhenNoSubscriber(){
+        StepVerifier.create(feed(2, AnimeProperties.ChangesOverflow.DROP_OLDEST).publish(List.of(created)))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("changes drops the oldest changes of a slow subscriber when its buffer is full")
+    public void changes_DropOldest_WhenBufferIsFull(){
+        AnimeChangeFeed feed = feed(2, AnimeProperties.ChangesOverflow.DROP_OLDEST);
+
+        StepVerifier.create(feed.changes(), 0)
+                .then(() -> feed.publish(List.of(created, updated, deleted)).block())
+                .thenRequest(2)
+                .expectNext(updated, deleted)
+                .thenCancel()
+                .verify();
+
+        Assertions.assertEquals(1, meterRegistry.get("anime.changes.dropped").functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("changes disconnects a slow subscriber when its buffer is full and the policy says so")
+    public void changes_Disconnect_WhenBufferIsFull(){
+        AnimeChangeFeed feed = feed(2, AnimeProperties.ChangesOverflow.DISCONNECT);
+
+        StepVerifier.create(feed.changes(), 0)
+                .then(() -> feed.publish(List.of(created, updated, deleted)).block())
+                .thenRequest(3)
+                .expectNext(created, updated)
+                .verifyErrorMatches(Exceptions::isOverflow);
+
+        Assertions.assertEquals(1, meterRegistry.get("anime.changes.disconnected").functionCounter().count());
+        Assertions.assertEquals(0, meterRegistry.get("anime.changes.subscribers").gauge().value());
+    }
+
+    private AnimeChangeFeed feed(int bufferSize, AnimeProperties.ChangesOverflow overflow) {
+        AnimeProperties animeProperties = new AnimeProperties();
+        animeProperties.getChanges().setBufferSize(bufferSize);
+        animeProperties.getChanges().setOverflow(overflow);
+        AnimeChangeFeed feed = new AnimeChangeFeed(animeProperties, Optional.empty());
+        feed.bindTo(meterRegistry);
+        return feed;
+    }
+}
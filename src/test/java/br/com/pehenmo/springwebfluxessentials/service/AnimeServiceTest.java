@@ -1,15 +1,28 @@
 package br.com.pehenmo.springwebfluxessentials.service;
 
+import br.com.pehenmo.springwebfluxessentials.config.AnimeProperties;
+import br.com.pehenmo.springwebfluxessentials.config.ReadReplicas;
+import br.com.pehenmo.springwebfluxessentials.dto.AnimeBulkResult;
+import br.com.pehenmo.springwebfluxessentials.dto.AnimeChange;
+import br.com.pehenmo.springwebfluxessentials.dto.AnimeChunkResult;
+import br.com.pehenmo.springwebfluxessentials.dto.AnimePage;
+import br.com.pehenmo.springwebfluxessentials.dto.AnimeRowError;
+import br.com.pehenmo.springwebfluxessentials.dto.AnimeUpsertResult;
 import br.com.pehenmo.springwebfluxessentials.entity.Anime;
+import br.com.pehenmo.springwebfluxessentials.exception.BatchValidationException;
 import br.com.pehenmo.springwebfluxessentials.repository.AnimeRepository;
 import br.com.pehenmo.springwebfluxessentials.util.AnimeCreator;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentMatchers;
 import org.mockito.BDDMockito;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import org.springframework.web.server.ResponseStatusException;
 import reactor.blockhound.BlockHound;
 import reactor.blockhound.BlockingOperationError;
@@ -18,9 +31,17 @@ import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 import reactor.test.StepVerifier;
 
+import javax.validation.Validation;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @ExtendWith(SpringExtension.class)
 class AnimeServiceTest {
@@ -31,6 +52,27 @@ class AnimeServiceTest {
     @Mock
     private AnimeRepository animeRepository;
 
+    @Spy
+    private AnimeProperties animeProperties = new AnimeProperties();
+
+    @Spy
+    private AnimeCache animeCache = new AnimeCache(new AnimeProperties());
+
+    @Spy
+    private AnimeSingleFlight animeSingleFlight = new AnimeSingleFlight();
+
+    @Mock
+    private AnimeBatchLoader animeBatchLoader;
+
+    @Spy
+    private AnimeChangeFeed animeChangeFeed = new AnimeChangeFeed(new AnimeProperties(), Optional.empty());
+
+    @Mock
+    private TransactionalOperator transactionalOperator;
+
+    @Spy
+    private AnimeValidator animeValidator = new AnimeValidator(Validation.buildDefaultValidatorFactory().getValidator());
+
     private final Anime anime = AnimeCreator.createValidAnime();
 
     @BeforeAll
@@ -57,7 +99,19 @@ class AnimeServiceTest {
 
     @BeforeEach
     public void setUp(){
-        BDDMockito.when(animeRepository.findAll()).
+        BDDMockito.when(transactionalOperator.transactional(ArgumentMatchers.<Mono<Object>>any())).
+                thenAnswer(invocation -> invocation.getArgument(0));
+
+        BDDMockito.when(transactionalOperator.transactional(ArgumentMatchers.<Flux<Object>>any())).
+                thenAnswer(invocation -> invocation.getArgument(0));
+
+        BDDMockito.when(animeBatchLoader.load(ArgumentMatchers.anyInt())).
+                thenAnswer(invocation -> Mono.defer(() -> animeRepository.findById(invocation.<Integer>getArgument(0))));
+
+        BDDMockito.when(animeRepository.findPageAfter(0, 21)).
+                thenReturn(Flux.just(anime).log());
+
+        BDDMockito.when(animeRepository.streamAll(ArgumentMatchers.anyInt())).
                 thenReturn(Flux.just(anime).log());
 
         BDDMockito.when(animeRepository.findById(ArgumentMatchers.anyInt())).
@@ -69,21 +123,171 @@ class AnimeServiceTest {
         BDDMockito.when(animeRepository.delete(ArgumentMatchers.any(Anime.class))).
                 thenReturn(Mono.empty());
 
+        BDDMockito.when(animeRepository.updateNameById(ArgumentMatchers.anyInt(), ArgumentMatchers.anyString())).
+                thenReturn(Mono.just(1));
+
+        BDDMockito.when(animeRepository.removeById(ArgumentMatchers.anyInt())).
+                thenReturn(Mono.just(1));
+
         BDDMockito.when(animeRepository.save(AnimeCreator.createValidUpdatedAnime())).
                 thenReturn(Mono.just(anime).log());
 
-        BDDMockito.when(animeRepository.saveAll(List.of(AnimeCreator.createAnimeToBeSaved(), AnimeCreator.createAnimeToBeSaved()))).
+        BDDMockito.when(animeRepository.insertAll(ArgumentMatchers.eq(List.of(AnimeCreator.createAnimeToBeSaved(), AnimeCreator.createAnimeToBeSaved())), ArgumentMatchers.anyInt())).
                 thenReturn(Flux.just(anime, anime).log());
 
     }
 
     @Test
-    @DisplayName("findAll returns a flux of anime")
-    public void findAll_ReturnFluxOfAnime_WhenSuccessful(){
-        StepVerifier.create(animeService.findAll())
+    @DisplayName("findPage returns a page of the default size when no limit is given")
+    public void findPage_ReturnDefaultSizePage_WhenLimitIsNull(){
+        StepVerifier.create(animeService.findPage(null, null))
+                .expectSubscription()
+                .expectNext(new AnimePage(List.of(anime), null))
+                .verifyComplete();
+
+        BDDMockito.verify(animeRepository, Mockito.never()).findAll();
+    }
+
+    @Test
+    @DisplayName("streamAll returns a flux of anime read with the configured fetch size")
+    public void streamAll_ReturnFluxOfAnime_WhenSuccessful(){
+        StepVerifier.create(animeService.streamAll())
+                .expectSubscription()
+                .expectNext(anime)
+                .verifyComplete();
+
+        BDDMockito.verify(animeRepository).streamAll(animeProperties.getStream().getFetchSize());
+    }
+
+    @Test
+    @DisplayName("findPage returns a page with the next cursor when there are more animes")
+    public void findPage_ReturnPageWithNextCursor_WhenThereAreMoreAnimes(){
+        Anime second = anime.withId(2);
+        BDDMockito.when(animeRepository.findPageAfter(0, 2)).
+                thenReturn(Flux.just(anime, second).log());
+
+        StepVerifier.create(animeService.findPage(null, 1))
+                .expectSubscription()
+                .assertNext(page -> {
+                    Assertions.assertEquals(List.of(anime), page.getContent());
+                    Assertions.assertEquals(anime.getId(), page.getNext());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("findPage returns the last page without next cursor")
+    public void findPage_ReturnPageWithoutNextCursor_WhenLastPage(){
+        BDDMockito.when(animeRepository.findPageAfter(1, 21)).
+                thenReturn(Flux.just(anime).log());
+
+        StepVerifier.create(animeService.findPage(1, null))
+                .expectSubscription()
+                .assertNext(page -> {
+                    Assertions.assertEquals(List.of(anime), page.getContent());
+                    Assertions.assertNull(page.getNext());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("findPage caps the page size to the configured maximum")
+    public void findPage_CapPageSize_WhenLimitIsAboveMaximum(){
+        BDDMockito.when(animeRepository.findPageAfter(0, 501)).
+                thenReturn(Flux.just(anime).log());
+
+        StepVerifier.create(animeService.findPage(null, 10_000))
+                .expectSubscription()
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("findPage returns mono error when limit is not positive")
+    public void findPage_ReturnMonoError_WhenLimitIsInvalid(){
+        StepVerifier.create(animeService.findPage(null, 0))
+                .expectSubscription()
+                .expectError(ResponseStatusException.class)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("search returns the requested page of matches")
+    public void search_ReturnFluxOfAnime_WhenSuccessful(){
+        BDDMockito.when(animeRepository.search("naruto", 100, 20, 10)).
+                thenReturn(Flux.just(anime).log());
+
+        StepVerifier.create(animeService.search(" naruto ", 2, 10))
+                .expectSubscription()
+                .expectNext(anime)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("search stops paging at the configured maximum of results")
+    public void search_LimitResults_WhenPageReachesMaximum(){
+        BDDMockito.when(animeRepository.search("naruto", 100, 80, 20)).
+                thenReturn(Flux.just(anime).log());
+
+        StepVerifier.create(animeService.search("naruto", 2, 40))
+                .expectSubscription()
+                .expectNext(anime)
+                .verifyComplete();
+
+        StepVerifier.create(animeService.search("naruto", 5, 20))
+                .expectSubscription()
+                .verifyComplete();
+
+        Mockito.verify(animeRepository).search("naruto", 100, 80, 20);
+        Mockito.verifyNoMoreInteractions(animeRepository);
+    }
+
+    @Test
+    @DisplayName("search returns flux error when the query is blank")
+    public void search_ReturnFluxError_WhenQueryIsBlank(){
+        StepVerifier.create(animeService.search(" ", null, null))
+                .expectSubscription()
+                .expectError(ResponseStatusException.class)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("findAllById returns the existing animes in the order of the ids with a single query")
+    public void findAllById_ReturnAnimesInOrder_WhenSuccessful(){
+        Anime second = anime.withId(2);
+        BDDMockito.when(animeRepository.findAllById(ArgumentMatchers.<Iterable<Integer>>any())).
+                thenReturn(Flux.just(anime, second).log());
+
+        StepVerifier.create(animeService.findAllById(List.of(2, 3, 1, 2)))
                 .expectSubscription()
+                .expectNext(second, anime)
+                .verifyComplete();
+
+        BDDMockito.verify(animeRepository).findAllById(ArgumentMatchers.<Iterable<Integer>>eq(new LinkedHashSet<>(List.of(2, 3, 1))));
+    }
+
+    @Test
+    @DisplayName("findAllById does not cache the animes read from a replica")
+    public void findAllById_DoNotCacheAnimes_WhenSuccessful(){
+        BDDMockito.when(animeRepository.findAllById(ArgumentMatchers.<Iterable<Integer>>any())).
+                thenReturn(Flux.just(anime));
+
+        StepVerifier.create(animeService.findAllById(List.of(anime.getId())))
                 .expectNext(anime)
                 .verifyComplete();
+
+        BDDMockito.verify(animeCache, Mockito.never()).put(ArgumentMatchers.any());
+    }
+
+    @Test
+    @DisplayName("findAllById returns flux error when there are more ids than allowed")
+    public void findAllById_ReturnFluxError_WhenThereAreTooManyIds(){
+        List<Integer> ids = IntStream.rangeClosed(1, 501).boxed().collect(Collectors.toList());
+
+        StepVerifier.create(animeService.findAllById(ids))
+                .expectSubscription()
+                .expectError(ResponseStatusException.class)
+                .verify();
     }
 
     @Test
@@ -95,6 +299,53 @@ class AnimeServiceTest {
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("findById returns the cached anime without reaching the repository again")
+    public void findById_ReturnCachedAnime_WhenCalledTwice(){
+        StepVerifier.create(animeService.findById(1).then(animeService.findById(1)))
+                .expectSubscription()
+                .expectNext(anime)
+                .verifyComplete();
+
+        BDDMockito.verify(animeRepository, Mockito.times(1)).findById(1);
+        Assertions.assertEquals(1, animeCache.stats().hitCount());
+        Assertions.assertEquals(1, animeCache.stats().missCount());
+    }
+
+    @Test
+    @DisplayName("findById looks the anime up again and refreshes the cache when the primary is required")
+    public void findById_BypassCache_WhenPrimaryRequired(){
+        Anime renamed = AnimeCreator.createValidUpdatedAnime();
+        BDDMockito.when(animeRepository.findById(ArgumentMatchers.anyInt())).
+                thenReturn(Mono.just(anime)).thenReturn(Mono.just(renamed));
+
+        StepVerifier.create(animeService.findById(1)
+                        .then(animeService.findById(1).contextWrite(ReadReplicas::requirePrimary))
+                        .then(animeService.findById(1)))
+                .expectSubscription()
+                .expectNext(renamed)
+                .verifyComplete();
+
+        BDDMockito.verify(animeRepository, Mockito.times(2)).findById(1);
+    }
+
+    @Test
+    @DisplayName("findById does not cache animes that do not exist")
+    public void findById_DoNotCache_WhenEmptyMonoIsReturned(){
+        BDDMockito.when(animeRepository.findById(ArgumentMatchers.anyInt())).
+                thenReturn(Mono.<Anime>empty()).thenReturn(Mono.just(anime));
+
+        StepVerifier.create(animeService.findById(1))
+                .expectSubscription()
+                .expectError(ResponseStatusException.class)
+                .verify();
+
+        StepVerifier.create(animeService.findById(1))
+                .expectSubscription()
+                .expectNext(anime)
+                .verifyComplete();
+    }
+
     @Test
     @DisplayName("findById returns mono error when anime does not exist")
     public void findById_ReturnMonoOfError_WhenEmptyMonoIsReturned(){
@@ -119,6 +370,130 @@ class AnimeServiceTest {
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("save publishes the creation once the anime is saved")
+    public void save_PublishCreation_WhenSuccessful(){
+        StepVerifier.create(animeChangeFeed.changes())
+                .then(() -> animeService.save(AnimeCreator.createAnimeToBeSaved()).block())
+                .expectNext(AnimeChange.created(anime))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    @DisplayName("delete publishes the deletion once the anime is deleted")
+    public void delete_PublishDeletion_WhenSuccessful(){
+        StepVerifier.create(animeChangeFeed.changes())
+                .then(() -> animeService.delete(1).block())
+                .expectNext(AnimeChange.deleted(1))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    @DisplayName("deleteAll deletes the distinct ids with one statement and reports the missing ones")
+    public void deleteAll_ReportDeletedAndMissing_WhenSuccessful(){
+        BDDMockito.when(animeRepository.removeAllById(List.of(3, 1, 2))).
+                thenReturn(Flux.just(1, 3));
+
+        StepVerifier.create(animeChangeFeed.changes())
+                .then(() -> StepVerifier.create(animeService.deleteAll(List.of(3, 1, 3, 2)))
+                        .expectNext(new AnimeBulkResult(2, List.of(2)))
+                        .verifyComplete())
+                .expectNext(AnimeChange.deleted(3), AnimeChange.deleted(1))
+                .thenCancel()
+                .verify();
+
+        BDDMockito.verify(animeRepository, Mockito.never()).removeById(ArgumentMatchers.anyInt());
+    }
+
+    @Test
+    @DisplayName("deleteAll evicts the deleted animes from the cache only once the statement is committed")
+    public void deleteAll_EvictAnimes_WhenCommitted(){
+        BDDMockito.when(animeRepository.removeAllById(List.of(1, 2))).
+                thenReturn(Flux.just(1));
+        failEvictionsBeforeCommit();
+
+        StepVerifier.create(animeService.deleteAll(List.of(1, 2)))
+                .expectNext(new AnimeBulkResult(1, List.of(2)))
+                .verifyComplete();
+
+        BDDMockito.verify(animeCache).invalidate(1);
+        BDDMockito.verify(animeCache, Mockito.never()).invalidate(2);
+    }
+
+    @Test
+    @DisplayName("deleteAll returns mono error without deleting when the ids are invalid")
+    public void deleteAll_ReturnMonoError_WhenIdsAreInvalid(){
+        StepVerifier.create(animeService.deleteAll(Arrays.asList(1, null)))
+                .expectError(ResponseStatusException.class)
+                .verify();
+        StepVerifier.create(animeService.deleteAll(List.of()))
+                .expectError(ResponseStatusException.class)
+                .verify();
+
+        BDDMockito.verify(animeRepository, Mockito.never()).removeAllById(ArgumentMatchers.anyList());
+    }
+
+    @Test
+    @DisplayName("updateAll renames the animes with one statement, an id given twice with its last name, and reports the missing ones")
+    public void updateAll_ReportUpdatedAndMissing_WhenSuccessful(){
+        Anime renamed = AnimeCreator.createValidUpdatedAnime();
+        Anime missing = anime.withId(2);
+        BDDMockito.when(animeRepository.updateNamesById(List.of(renamed, missing))).
+                thenReturn(Flux.just(1));
+
+        StepVerifier.create(animeChangeFeed.changes())
+                .then(() -> StepVerifier.create(animeService.updateAll(List.of(anime, missing, renamed)))
+                        .expectNext(new AnimeBulkResult(1, List.of(2)))
+                        .verifyComplete())
+                .expectNext(AnimeChange.updated(renamed))
+                .thenCancel()
+                .verify();
+
+        BDDMockito.verify(animeRepository, Mockito.never()).updateNameById(ArgumentMatchers.anyInt(), ArgumentMatchers.anyString());
+    }
+
+    @Test
+    @DisplayName("updateAll evicts the renamed animes from the cache only once the statement is committed")
+    public void updateAll_EvictAnimes_WhenCommitted(){
+        BDDMockito.when(animeRepository.updateNamesById(List.of(anime))).
+                thenReturn(Flux.just(anime.getId()));
+        failEvictionsBeforeCommit();
+
+        StepVerifier.create(animeService.updateAll(List.of(anime)))
+                .expectNext(new AnimeBulkResult(1, List.of()))
+                .verifyComplete();
+
+        BDDMockito.verify(animeCache).invalidate(anime.getId());
+    }
+
+    @Test
+    @DisplayName("updateAll returns mono error without writing when an anime has no id or an invalid name")
+    public void updateAll_ReturnMonoError_WhenAnimeIsInvalid(){
+        StepVerifier.create(animeService.updateAll(List.of(AnimeCreator.createAnimeToBeSaved())))
+                .expectError(ResponseStatusException.class)
+                .verify();
+        StepVerifier.create(animeService.updateAll(List.of(anime.withName(""))))
+                .expectError(BatchValidationException.class)
+                .verify();
+
+        BDDMockito.verify(animeRepository, Mockito.never()).updateNamesById(ArgumentMatchers.anyList());
+    }
+
+    @Test
+    @DisplayName("delete publishes nothing when the anime does not exist")
+    public void delete_PublishNothing_WhenAnimeDoesNotExist(){
+        BDDMockito.when(animeRepository.removeById(ArgumentMatchers.anyInt())).
+                thenReturn(Mono.just(0));
+
+        StepVerifier.create(animeService.delete(1))
+                .expectError(ResponseStatusException.class)
+                .verify();
+
+        BDDMockito.verify(animeChangeFeed, Mockito.never()).publish(ArgumentMatchers.anyList());
+    }
+
     @Test
     @DisplayName("delete an anime when successful")
     public void delete_RemoveAnime_WhenSuccessful(){
@@ -128,12 +503,35 @@ class AnimeServiceTest {
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("delete invalidates the cached anime")
+    public void delete_InvalidateCache_WhenSuccessful(){
+        StepVerifier.create(animeService.findById(1).then(animeService.delete(1)).then(animeService.findById(1)))
+                .expectSubscription()
+                .expectNext(anime)
+                .verifyComplete();
+
+        BDDMockito.verify(animeRepository, Mockito.times(2)).findById(1);
+    }
+
+    @Test
+    @DisplayName("delete and update issue a single statement without reading the anime first")
+    public void deleteAndUpdate_DoNotReadAnime_WhenSuccessful(){
+        StepVerifier.create(animeService.delete(1).then(animeService.update(AnimeCreator.createValidUpdatedAnime())))
+                .expectSubscription()
+                .verifyComplete();
+
+        BDDMockito.verify(animeRepository).removeById(1);
+        BDDMockito.verify(animeRepository).updateNameById(1, "Tensei Shitara 2");
+        BDDMockito.verify(animeRepository, Mockito.never()).findById(ArgumentMatchers.anyInt());
+    }
+
     @Test
     @DisplayName("delete error when Anime does not exist")
     public void delete_RemoveMonoError_WhenEmptyAnimeMonoIsReturned(){
 
-        BDDMockito.when(animeRepository.findById(ArgumentMatchers.anyInt())).
-                thenReturn(Mono.empty());
+        BDDMockito.when(animeRepository.removeById(ArgumentMatchers.anyInt())).
+                thenReturn(Mono.just(0));
 
         StepVerifier.create(animeService.delete(1))
                 .expectSubscription()
@@ -152,12 +550,25 @@ class AnimeServiceTest {
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("update refreshes the cached anime with the updated one")
+    public void update_RefreshCache_WhenSuccessful(){
+        Anime animeUpdated = AnimeCreator.createValidUpdatedAnime();
+
+        StepVerifier.create(animeService.update(animeUpdated).then(animeService.findById(1)))
+                .expectSubscription()
+                .expectNext(animeUpdated)
+                .verifyComplete();
+
+        BDDMockito.verify(animeRepository, Mockito.never()).findById(ArgumentMatchers.anyInt());
+    }
+
     @Test
     @DisplayName("updated error when Anime does not exist")
     public void update_Error_WhenReturnsEmptyAnime(){
 
-        BDDMockito.when(animeRepository.findById(ArgumentMatchers.anyInt())).
-                thenReturn(Mono.empty());
+        BDDMockito.when(animeRepository.updateNameById(ArgumentMatchers.anyInt(), ArgumentMatchers.anyString())).
+                thenReturn(Mono.just(0));
 
         StepVerifier.create(animeService.update(AnimeCreator.createValidUpdatedAnime()))
                 .expectSubscription()
@@ -178,19 +589,253 @@ class AnimeServiceTest {
     }
 
     @Test
-    @DisplayName("saveAll returns mono error when  one of the objetos list container invalid name")
-    public void saveAll_ReturnsMonoError_WhenInvalidName(){
+    @DisplayName("saveAll publishes the creations once the batch is committed")
+    public void saveAll_PublishCreations_WhenCommitted(){
+        Anime animeToBeSaved = AnimeCreator.createAnimeToBeSaved();
+
+        StepVerifier.create(animeChangeFeed.changes())
+                .then(() -> animeService.saveAll(List.of(animeToBeSaved, animeToBeSaved)).blockLast())
+                .expectNext(AnimeChange.created(anime), AnimeChange.created(anime))
+                .thenCancel()
+                .verify();
+
+        InOrder inOrder = Mockito.inOrder(transactionalOperator, animeChangeFeed);
+        inOrder.verify(transactionalOperator).transactional(ArgumentMatchers.<Mono<Object>>any());
+        inOrder.verify(animeChangeFeed).publish(ArgumentMatchers.anyList());
+    }
+
+    @Test
+    @DisplayName("saveAll evicts the saved animes from the cache only once the batch is committed")
+    public void saveAll_EvictAnimes_WhenCommitted(){
+        List<Anime> animes = List.of(anime, anime.withId(2));
+        BDDMockito.when(animeRepository.saveAll(animes)).
+                thenReturn(Flux.fromIterable(animes));
+        failEvictionsBeforeCommit();
+
+        StepVerifier.create(animeService.saveAll(animes))
+                .expectNextCount(2)
+                .verifyComplete();
+
+        BDDMockito.verify(animeCache).invalidate(anime.getId());
+    }
 
-        BDDMockito.when(animeRepository.saveAll(ArgumentMatchers.anyIterable())).
-                thenReturn(Flux.just(anime, anime.withName("")).log());
+    @Test
+    @DisplayName("upsertAll reports the inserted, updated and unchanged animes")
+    public void upsertAll_ReportCounts_WhenSuccessful(){
+        Anime second = anime.withId(2);
+        Anime third = anime.withId(3);
+        BDDMockito.when(animeRepository.upsertAll(List.of(anime, second, third), 1000)).
+                thenReturn(Flux.just(AnimeChange.created(anime), AnimeChange.updated(second)));
+
+        StepVerifier.create(animeService.upsertAll(List.of(anime, second, third)))
+                .expectNext(new AnimeUpsertResult(1, 1, 1))
+                .verifyComplete();
 
+        BDDMockito.verify(animeRepository, Mockito.never()).insertAll(ArgumentMatchers.anyList(), ArgumentMatchers.anyInt());
+    }
+
+    @Test
+    @DisplayName("upsertAll evicts the changed animes from the cache only once the batch is committed")
+    public void upsertAll_EvictAnimes_WhenCommitted(){
+        BDDMockito.when(animeRepository.upsertAll(List.of(anime), 1000)).
+                thenReturn(Flux.just(AnimeChange.updated(anime)));
+        failEvictionsBeforeCommit();
+
+        StepVerifier.create(animeService.upsertAll(List.of(anime)))
+                .expectNext(new AnimeUpsertResult(0, 1, 0))
+                .verifyComplete();
+
+        BDDMockito.verify(animeCache).invalidate(anime.getId());
+    }
+
+    @Test
+    @DisplayName("upsertAll upserts an id given twice once, with its last name")
+    public void upsertAll_DeduplicateIds_WhenIdIsRepeated(){
+        Anime renamed = AnimeCreator.createValidUpdatedAnime();
+        BDDMockito.when(animeRepository.upsertAll(List.of(renamed), 1000)).
+                thenReturn(Flux.just(AnimeChange.updated(renamed)));
+
+        StepVerifier.create(animeService.upsertAll(List.of(anime, renamed)))
+                .expectNext(new AnimeUpsertResult(0, 1, 0))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("upsertAll rejects every replay of a payload with animes without id, writing nothing")
+    public void upsertAll_ReturnMonoError_WhenReplayedWithAnimesWithoutId(){
+        List<Anime> animes = List.of(anime, AnimeCreator.createAnimeToBeSaved());
+
+        for (int replay = 0; replay < 2; replay++) {
+            StepVerifier.create(animeService.upsertAll(animes))
+                    .expectErrorSatisfies(error -> {
+                        Assertions.assertTrue(error instanceof BatchValidationException);
+                        List<AnimeRowError> errors = ((BatchValidationException) error).getErrors();
+                        Assertions.assertEquals(List.of(new AnimeRowError(1, "id", "must not be null")), errors);
+                    })
+                    .verify();
+        }
+
+        BDDMockito.verify(animeRepository, Mockito.never()).upsertAll(ArgumentMatchers.anyList(), ArgumentMatchers.anyInt());
+        BDDMockito.verify(animeRepository, Mockito.never()).insertAll(ArgumentMatchers.anyList(), ArgumentMatchers.anyInt());
+    }
+
+    @Test
+    @DisplayName("upsertAll returns mono error without writing when one of the animes is invalid")
+    public void upsertAll_ReturnMonoError_WhenInvalidName(){
+        StepVerifier.create(animeService.upsertAll(List.of(anime, anime.withId(2).withName(""))))
+                .expectError(BatchValidationException.class)
+                .verify();
+
+        BDDMockito.verify(animeRepository, Mockito.never()).upsertAll(ArgumentMatchers.anyList(), ArgumentMatchers.anyInt());
+    }
+
+    @Test
+    @DisplayName("saveAll inserts new animes in chunks of the configured size")
+    public void saveAll_InsertInChunks_WhenAnimesAreNew(){
+        animeProperties.getBatch().setChunkSize(2);
+        Anime animeToBeSaved = AnimeCreator.createAnimeToBeSaved();
+        List<Anime> animes = List.of(animeToBeSaved, animeToBeSaved, animeToBeSaved);
+        BDDMockito.when(animeRepository.insertAll(animes, 2)).
+                thenReturn(Flux.just(anime, anime.withId(2), anime.withId(3)).log());
+
+        StepVerifier.create(animeService.saveAll(animes))
+                .expectSubscription()
+                .expectNext(anime, anime.withId(2), anime.withId(3))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("saveAll saves through the repository when the batch carries existing ids")
+    public void saveAll_SaveThroughRepository_WhenAnimesHaveIds(){
+        List<Anime> animes = List.of(anime, AnimeCreator.createAnimeToBeSaved());
+        BDDMockito.when(animeRepository.saveAll(animes)).
+                thenReturn(Flux.just(anime, anime.withId(2)).log());
+
+        StepVerifier.create(animeService.saveAll(animes))
+                .expectSubscription()
+                .expectNext(anime, anime.withId(2))
+                .verifyComplete();
+
+        BDDMockito.verify(animeRepository, Mockito.never()).insertAll(ArgumentMatchers.anyList(), ArgumentMatchers.anyInt());
+    }
+
+    @Test
+    @DisplayName("saveAll returns mono error when  one of the objetos list container invalid name")
+    public void saveAll_ReturnsMonoError_WhenInvalidName(){
         Anime animeToBeSaved = AnimeCreator.createAnimeToBeSaved();
 
         StepVerifier.create(animeService.saveAll(List.of(animeToBeSaved,animeToBeSaved.withName(""))))
                 .expectSubscription()
-                .expectNext(anime)
-                .expectError(ResponseStatusException.class)
+                .expectErrorSatisfies(error -> {
+                    Assertions.assertTrue(error instanceof BatchValidationException);
+                    List<AnimeRowError> errors = ((BatchValidationException) error).getErrors();
+                    Assertions.assertEquals(1, errors.size());
+                    Assertions.assertEquals(1, errors.get(0).getRow());
+                    Assertions.assertEquals("name", errors.get(0).getField());
+                })
                 .verify();
+
+        BDDMockito.verify(animeRepository, Mockito.never()).insertAll(ArgumentMatchers.anyList(), ArgumentMatchers.anyInt());
+        BDDMockito.verify(animeRepository, Mockito.never()).saveAll(ArgumentMatchers.anyIterable());
+    }
+
+    @Test
+    @DisplayName("saveStream commits the animes chunk by chunk and reports each chunk")
+    public void saveStream_ReturnChunkResults_WhenSuccessful(){
+        animeProperties.getBatch().setChunkSize(2);
+        Anime animeToBeSaved = AnimeCreator.createAnimeToBeSaved();
+        BDDMockito.when(animeRepository.insertAll(List.of(animeToBeSaved, animeToBeSaved), 2)).
+                thenReturn(Flux.just(anime, anime.withId(2)).log());
+        BDDMockito.when(animeRepository.insertAll(List.of(animeToBeSaved), 1)).
+                thenReturn(Flux.just(anime.withId(3)).log());
+
+        StepVerifier.create(animeService.saveStream(Flux.just(animeToBeSaved, animeToBeSaved, animeToBeSaved)))
+                .expectSubscription()
+                .expectNext(new AnimeChunkResult(0, 2, List.of(1, 2), List.of()))
+                .expectNext(new AnimeChunkResult(1, 1, List.of(3), List.of()))
+                .verifyComplete();
+
+        BDDMockito.verify(transactionalOperator, Mockito.times(2)).transactional(ArgumentMatchers.<Mono<Object>>any());
+    }
+
+    @Test
+    @DisplayName("saveStream closes a chunk when the window timeout elapses")
+    public void saveStream_CloseChunk_WhenWindowTimeoutElapses(){
+        animeProperties.getBatch().setWindowTimeout(Duration.ofMillis(100));
+        Anime animeToBeSaved = AnimeCreator.createAnimeToBeSaved();
+        BDDMockito.when(animeRepository.insertAll(List.of(animeToBeSaved), 1)).
+                thenReturn(Flux.just(anime).log());
+
+        StepVerifier.create(animeService.saveStream(Flux.just(animeToBeSaved).concatWith(Flux.never())))
+                .expectSubscription()
+                .expectNext(new AnimeChunkResult(0, 1, List.of(1), List.of()))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    @DisplayName("saveStream keeps closing chunks by time while a slow chunk commits, without overflowing")
+    public void saveStream_SaveEveryAnime_WhenChunksCommitSlowerThanWindowTimeout(){
+        animeProperties.getBatch().setWindowTimeout(Duration.ofMillis(1));
+        Anime animeToBeSaved = AnimeCreator.createAnimeToBeSaved();
+        BDDMockito.when(animeRepository.insertAll(ArgumentMatchers.anyList(), ArgumentMatchers.anyInt())).
+                thenAnswer(invocation -> Flux.fromIterable(invocation.<List<Anime>>getArgument(0))
+                        .map(saved -> anime)
+                        .delaySubscription(Duration.ofSeconds(1)));
+
+        StepVerifier.withVirtualTime(() -> animeService.saveStream(Flux.range(0, 100)
+                                .delayElements(Duration.ofMillis(2))
+                                .map(i -> animeToBeSaved))
+                        .map(AnimeChunkResult::getCount)
+                        .reduce(0, Integer::sum))
+                .thenAwait(Duration.ofMinutes(10))
+                .expectNext(100)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("saveStream skips and reports a chunk with invalid rows without writing it")
+    public void saveStream_ReportErrors_WhenChunkHasInvalidRows(){
+        animeProperties.getBatch().setChunkSize(2);
+        Anime animeToBeSaved = AnimeCreator.createAnimeToBeSaved();
+        BDDMockito.when(animeRepository.insertAll(List.of(animeToBeSaved, animeToBeSaved), 2)).
+                thenReturn(Flux.just(anime, anime.withId(2)).log());
+
+        StepVerifier.create(animeService.saveStream(Flux.just(animeToBeSaved, animeToBeSaved, animeToBeSaved, animeToBeSaved.withName(""))))
+                .expectSubscription()
+                .expectNext(new AnimeChunkResult(0, 2, List.of(1, 2), List.of()))
+                .assertNext(chunkResult -> {
+                    Assertions.assertEquals(0, chunkResult.getCount());
+                    Assertions.assertEquals(1, chunkResult.getErrors().size());
+                    Assertions.assertEquals(3, chunkResult.getErrors().get(0).getRow());
+                })
+                .verifyComplete();
+
+        BDDMockito.verify(animeRepository, Mockito.times(1)).insertAll(ArgumentMatchers.anyList(), ArgumentMatchers.anyInt());
     }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("saveStream skips and reports a chunk with rows carrying an id instead of inserting them as new animes")
+    public void saveStream_ReportErrors_WhenChunkHasRowsWithId(){
+        StepVerifier.create(animeService.saveStream(Flux.just(AnimeCreator.createAnimeToBeSaved(), anime)))
+                .expectSubscription()
+                .expectNext(new AnimeChunkResult(0, 0, List.of(), List.of(new AnimeRowError(1, "id", "must be null"))))
+                .verifyComplete();
+
+        BDDMockito.verify(animeRepository, Mockito.never()).insertAll(ArgumentMatchers.anyList(), ArgumentMatchers.anyInt());
+    }
+
+    /**
+     * Makes the transactions mark when they commit, and the evictions from the cache fail
+     * when they come before.
+     */
+    private void failEvictionsBeforeCommit() {
+        AtomicBoolean committed = new AtomicBoolean();
+        BDDMockito.when(transactionalOperator.transactional(ArgumentMatchers.<Mono<Object>>any())).
+                thenAnswer(invocation -> invocation.<Mono<Object>>getArgument(0).doOnSuccess(value -> committed.set(true)));
+        BDDMockito.doAnswer(invocation -> {
+            Assertions.assertTrue(committed.get(), "evicted before the commit");
+            return invocation.callRealMethod();
+        }).when(animeCache).invalidate(ArgumentMatchers.anyInt());
+    }
+}
@@ -0,0 +1,73 @@
+package br.com.pehenmo.springwebfluxessentials.service;
+
+import br.com.pehenmo.springwebfluxessentials.entity.Anime;
+import br.com.pehenmo.springwebfluxessentials.util.AnimeCreator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+class AnimeSingleFlightTest {
+
+    private final Anime anime = AnimeCreator.createValidAnime();
+
+    private final AnimeSingleFlight animeSingleFlight = new AnimeSingleFlight();
+
+    @Test
+    @DisplayName("get shares the load in flight between the concurrent lookups of the same id")
+    public void get_ShareLoad_WhenLookupsAreConcurrent(){
+        Sinks.One<Anime> load = Sinks.one();
+        AtomicInteger loads = new AtomicInteger();
+
+        StepVerifier.create(Mono.zip(
+                        animeSingleFlight.get(1, id -> load.asMono().doOnSubscribe(subscription -> loads.incrementAndGet())),
+                        animeSingleFlight.get(1, id -> Mono.error(new IllegalStateException("second load")))))
+                .then(() -> load.tryEmitValue(anime))
+                .assertNext(animes -> {
+                    Assertions.assertEquals(anime, animes.getT1());
+                    Assertions.assertEquals(anime, animes.getT2());
+                })
+                .verifyComplete();
+
+        Assertions.assertEquals(1, loads.get());
+        Assertions.assertEquals(1, animeSingleFlight.loaded());
+        Assertions.assertEquals(1, animeSingleFlight.collapsed());
+    }
+
+    @Test
+    @DisplayName("get releases the id once the load completes, even when it fails")
+    public void get_ReleaseId_WhenLoadCompletes(){
+        StepVerifier.create(animeSingleFlight.get(1, id -> Mono.error(new IllegalStateException())))
+                .verifyError(IllegalStateException.class);
+
+        StepVerifier.create(animeSingleFlight.get(1, id -> Mono.just(anime)))
+                .expectNext(anime)
+                .verifyComplete();
+
+        StepVerifier.create(animeSingleFlight.get(1, id -> Mono.empty()))
+                .verifyComplete();
+
+        Assertions.assertEquals(3, animeSingleFlight.loaded());
+        Assertions.assertEquals(0, animeSingleFlight.collapsed());
+    }
+
+    @Test
+    @DisplayName("bindTo publishes the loaded and collapsed lookups")
+    public void bindTo_PublishLookups(){
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        animeSingleFlight.bindTo(meterRegistry);
+
+        StepVerifier.create(animeSingleFlight.get(1, id -> Mono.just(anime)))
+                .expectNext(anime)
+                .verifyComplete();
+
+        Assertions.assertEquals(1, meterRegistry.get("anime.lookups").tag("result", "loaded").functionCounter().count());
+        Assertions.assertEquals(0, meterRegistry.get("anime.lookups").tag("result", "collapsed").functionCounter().count());
+        Assertions.assertEquals(0, meterRegistry.get("anime.lookups.in.flight").gauge().value());
+    }
+}
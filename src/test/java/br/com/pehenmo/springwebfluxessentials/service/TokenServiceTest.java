@@ -0,0 +1,60 @@
+package br.com.pehenmo.springwebfluxessentials.service;
+
+import br.com.pehenmo.springwebfluxessentials.config.AnimeProperties;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import java.time.Duration;
+
+class TokenServiceTest {
+
+    private final Authentication authentication = new UsernamePasswordAuthenticationToken("pehenmo", null,
+            AuthorityUtils.commaSeparatedStringToAuthorityList("ROLE_ADMIN,ROLE_USER"));
+
+    private final TokenService tokenService = new TokenService(new AnimeProperties());
+
+    @Test
+    @DisplayName("verify returns the username and authorities of an issued token")
+    public void verify_ReturnAuthentication_WhenTokenIsValid(){
+        Authentication verified = tokenService.verify(tokenService.issue(authentication));
+
+        Assertions.assertTrue(verified.isAuthenticated());
+        Assertions.assertEquals("pehenmo", verified.getName());
+        Assertions.assertEquals(authentication.getAuthorities(), verified.getAuthorities());
+    }
+
+    @Test
+    @DisplayName("verify throws BadCredentialsException when the token was tampered")
+    public void verify_ThrowBadCredentials_WhenTokenIsTampered(){
+        String token = tokenService.issue(authentication);
+        String tampered = token.charAt(0) == 'A' ? "B" + token.substring(1) : "A" + token.substring(1);
+
+        Assertions.assertThrows(BadCredentialsException.class, () -> tokenService.verify(tampered));
+        Assertions.assertThrows(BadCredentialsException.class, () -> tokenService.verify("not-a-token"));
+    }
+
+    @Test
+    @DisplayName("verify throws BadCredentialsException when the token was signed by another key")
+    public void verify_ThrowBadCredentials_WhenSignedByAnotherKey(){
+        String token = new TokenService(new AnimeProperties()).issue(authentication);
+
+        Assertions.assertThrows(BadCredentialsException.class, () -> tokenService.verify(token));
+    }
+
+    @Test
+    @DisplayName("verify throws BadCredentialsException when the token is expired")
+    public void verify_ThrowBadCredentials_WhenTokenIsExpired(){
+        AnimeProperties animeProperties = new AnimeProperties();
+        animeProperties.getSecurity().getToken().setTtl(Duration.ofSeconds(-5));
+        TokenService expiringTokenService = new TokenService(animeProperties);
+
+        String token = expiringTokenService.issue(authentication);
+
+        Assertions.assertThrows(BadCredentialsException.class, () -> expiringTokenService.verify(token));
+    }
+}
@@ -0,0 +1,6 @@
+INSERT INTO anime (name) SELECT 'Anime ' || "X" FROM SYSTEM_RANGE(1, 1000);
+
+-- password: loadtest
+INSERT INTO "system_user" (name, username, password, authorities) VALUES
+    ('Load Admin', 'load-admin', '{bcrypt}$2a$10$JwKgD4c7Jg6q.CAFXOi6/eT.BZf1TA1Kr7tBHTwXr1lkOGZbqnX26', 'ROLE_ADMIN,ROLE_USER'),
+    ('Load User', 'load-user', '{bcrypt}$2a$10$JwKgD4c7Jg6q.CAFXOi6/eT.BZf1TA1Kr7tBHTwXr1lkOGZbqnX26', 'ROLE_USER');
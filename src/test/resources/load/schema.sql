@@ -0,0 +1,21 @@
+CREATE TABLE IF NOT EXISTS anime (
+    id SERIAL PRIMARY KEY,
+    name VARCHAR(255) NOT NULL
+);
+
+-- SYSTEM_USER is a keyword in H2, so the table is quoted here and in the generated queries
+CREATE TABLE IF NOT EXISTS "system_user" (
+    id SERIAL PRIMARY KEY,
+    name VARCHAR(255) NOT NULL,
+    username VARCHAR(255) NOT NULL UNIQUE,
+    password VARCHAR(255) NOT NULL,
+    authorities VARCHAR(255) NOT NULL
+);
+
+CREATE ALIAS IF NOT EXISTS anime_catalog_version FOR "br.com.pehenmo.springwebfluxessentials.load.H2CatalogVersion.version";
+
+CREATE VIEW IF NOT EXISTS anime_catalog_version AS SELECT anime_catalog_version() AS version;
+
+-- statement level, like the Postgres trigger of db/anime-catalog-version.sql
+CREATE TRIGGER IF NOT EXISTS anime_catalog_version_bump AFTER INSERT, UPDATE, DELETE ON anime
+    CALL "br.com.pehenmo.springwebfluxessentials.load.H2CatalogVersion";